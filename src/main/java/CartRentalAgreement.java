@@ -0,0 +1,88 @@
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Represents a rental agreement between a customer and a {@link RentalStore} to rent several {@link Tool}s together,
+ * made up of one {@link RentalAgreement} per tool.
+ * @author Eli Charleville
+ */
+public class CartRentalAgreement
+{
+    /**
+     * The {@link List} of {@link RentalAgreement}s, one per tool.
+     */
+    final private List<RentalAgreement> rentalAgreements;
+
+    /**
+     * Constructor for {@link CartRentalAgreement}.
+     * @param rentalAgreements
+     *         The {@link List} of {@link RentalAgreement}s, one per tool.
+     */
+    public CartRentalAgreement(final List<RentalAgreement> rentalAgreements)
+    {
+        this.rentalAgreements = List.copyOf(rentalAgreements);
+    }
+
+    @Override
+    public String toString()
+    {
+        final DecimalFormat decimalFormat = (DecimalFormat) NumberFormat.getCurrencyInstance(Locale.US);
+
+        final StringBuilder stringBuilder = new StringBuilder();
+
+        for (final RentalAgreement rentalAgreement : rentalAgreements)
+        {
+            stringBuilder.append(rentalAgreement).append("\n");
+        }
+
+        return stringBuilder.append("Total final charge: ").append(decimalFormat.format(getFinalCharge()))
+                .append("\n").toString();
+    }
+
+    /**
+     * @return The unmodifiable {@link List} of {@link RentalAgreement}s, one per tool.
+     */
+    public List<RentalAgreement> getRentalAgreements()
+    {
+        return rentalAgreements;
+    }
+
+    /**
+     * @return The {@link BigDecimal} total pre-discount charge.
+     */
+    public BigDecimal getPreDiscountCharge()
+    {
+        return sum(RentalAgreement::getPreDiscountCharge);
+    }
+
+    /**
+     * @return The {@link BigDecimal} total discount amount.
+     */
+    public BigDecimal getDiscountAmount()
+    {
+        return sum(RentalAgreement::getDiscountAmount);
+    }
+
+    /**
+     * @return The {@link BigDecimal} total final charge.
+     */
+    public BigDecimal getFinalCharge()
+    {
+        return sum(RentalAgreement::getFinalCharge);
+    }
+
+    /**
+     * Sums an amount over every {@link RentalAgreement}.
+     * @param amount
+     *         The {@link Function} that gets the {@link BigDecimal} amount of a {@link RentalAgreement}.
+     * @return The {@link BigDecimal} total.
+     */
+    private BigDecimal sum(final Function<RentalAgreement, BigDecimal> amount)
+    {
+        return rentalAgreements.stream().map(amount).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+}
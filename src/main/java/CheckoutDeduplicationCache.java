@@ -0,0 +1,268 @@
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * A bounded, time-expiring cache of {@link RentalAgreement}s by {@link String} idempotency key. A checkout retried
+ * with the same key gets the original {@link RentalAgreement} back instead of checking out again, and a retry that
+ * arrives while the original checkout is still running waits for it instead of contending for the tool.
+ * @author Eli Charleville
+ */
+public class CheckoutDeduplicationCache
+{
+    /**
+     * The maximum number of idempotency keys to remember.
+     */
+    final private int maximumSize;
+
+    /**
+     * The time in nanoseconds that an idempotency key is remembered for.
+     */
+    final private long timeToLiveNanos;
+
+    /**
+     * The {@link ConcurrentHashMap} of {@link Entry}s by {@link String} idempotency key.
+     */
+    final private ConcurrentHashMap<String, Entry> entriesByKey = new ConcurrentHashMap<>();
+
+    /**
+     * The {@link Queue} of {@link Entry}s from oldest to newest, used to evict entries. The entry of a checkout that
+     * returned null or threw is taken off the queue as soon as the checkout finishes, so that retries against an
+     * unavailable tool never evict remembered keys.
+     */
+    final private Queue<Entry> entriesByAge = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The number of {@link Entry}s in the queue, kept separately because counting a {@link ConcurrentLinkedQueue}
+     * walks it.
+     */
+    final private AtomicInteger queuedEntryCount = new AtomicInteger();
+
+    /**
+     * Constructor for {@link CheckoutDeduplicationCache}.
+     * @param maximumSize
+     *         The maximum number of idempotency keys to remember.
+     * @param timeToLive
+     *         The {@link Duration} that an idempotency key is remembered for.
+     * @throws IllegalArgumentException
+     *         If maximumSize < 1.
+     * @throws IllegalArgumentException
+     *         If timeToLive is not positive.
+     */
+    public CheckoutDeduplicationCache(final int maximumSize, final Duration timeToLive) throws IllegalArgumentException
+    {
+        if (maximumSize < 1)
+        {
+            throw new IllegalArgumentException("The maximum size must be greater than or equal to 1. Maximum size: "
+                    + maximumSize);
+        }
+
+        if (timeToLive.isNegative() || timeToLive.isZero())
+        {
+            throw new IllegalArgumentException("The time to live must be positive. Time to live: " + timeToLive);
+        }
+
+        this.maximumSize = maximumSize;
+        this.timeToLiveNanos = timeToLive.toNanos();
+    }
+
+    /**
+     * Returns the {@link RentalAgreement} remembered for a given idempotency key, or runs the checkout and remembers
+     * its {@link RentalAgreement} if the key is new or has expired. A checkout that returns null or throws is not
+     * remembered, so that a retry with the same key checks out again.
+     * @param idempotencyKey
+     *         The {@link String} key that identifies the checkout request.
+     * @param checkout
+     *         The {@link Supplier} that runs the checkout.
+     * @return A potentially null {@link RentalAgreement}.
+     */
+    public RentalAgreement getOrCheckout(final String idempotencyKey, final Supplier<RentalAgreement> checkout)
+    {
+        return getOrCheckout(idempotencyKey, null, checkout);
+    }
+
+    /**
+     * Returns the {@link RentalAgreement} remembered for a given idempotency key, or runs the checkout and remembers
+     * its {@link RentalAgreement} if the key is new or has expired. The key is tied to the request it was first used
+     * with, so that reusing it for a different request is rejected instead of returning the first request's
+     * agreement. A checkout that returns null or throws is not remembered, so that a retry with the same key checks
+     * out again.
+     * @param idempotencyKey
+     *         The {@link String} key that identifies the checkout request.
+     * @param request
+     *         The potentially null {@link Object} holding the request's parameters, compared with
+     *         {@link Object#equals(Object)}.
+     * @param checkout
+     *         The {@link Supplier} that runs the checkout.
+     * @return A potentially null {@link RentalAgreement}.
+     * @throws IllegalArgumentException
+     *         If the idempotency key is remembered for a different request.
+     */
+    public RentalAgreement getOrCheckout(final String idempotencyKey, final Object request,
+                                         final Supplier<RentalAgreement> checkout) throws IllegalArgumentException
+    {
+        final long now = System.nanoTime();
+        final Entry entry = new Entry(idempotencyKey, request, now);
+
+        Entry existing = entriesByKey.putIfAbsent(idempotencyKey, entry);
+
+        while (existing != null)
+        {
+            if (now - existing.createdNanos <= timeToLiveNanos)
+            {
+                if (!Objects.equals(existing.request, request))
+                {
+                    throw new IllegalArgumentException("The idempotency key must not be reused for a different " +
+                            "request. Idempotency key: " + idempotencyKey + " Request: " + request);
+                }
+
+                return existing.await();
+            }
+
+            existing = entriesByKey.replace(idempotencyKey, existing, entry) ? null :
+                    entriesByKey.putIfAbsent(idempotencyKey, entry);
+        }
+
+        entriesByAge.add(entry);
+        queuedEntryCount.incrementAndGet();
+        evict(now);
+
+        final RentalAgreement rentalAgreement;
+
+        try
+        {
+            rentalAgreement = checkout.get();
+        } catch (RuntimeException exception)
+        {
+            forget(entry);
+            entry.result.completeExceptionally(exception);
+            throw exception;
+        }
+
+        if (rentalAgreement == null)
+        {
+            forget(entry);
+        }
+        entry.result.complete(rentalAgreement);
+
+        return rentalAgreement;
+    }
+
+    /**
+     * @return The number of idempotency keys currently remembered.
+     */
+    public int size()
+    {
+        return entriesByKey.size();
+    }
+
+    /**
+     * @return The number of entries queued for eviction.
+     */
+    int queuedSize()
+    {
+        return queuedEntryCount.get();
+    }
+
+    /**
+     * Forgets expired idempotency keys, then the oldest keys while more than the maximum size are queued.
+     * @param now
+     *         The current {@link System#nanoTime()}.
+     */
+    private void evict(final long now)
+    {
+        Entry oldest;
+
+        while ((oldest = entriesByAge.peek()) != null
+                && (now - oldest.createdNanos > timeToLiveNanos || queuedEntryCount.get() > maximumSize))
+        {
+            if (entriesByAge.remove(oldest))
+            {
+                queuedEntryCount.decrementAndGet();
+                entriesByKey.remove(oldest.idempotencyKey, oldest);
+            }
+        }
+    }
+
+    /**
+     * Forgets the entry of a checkout that is not remembered, taking it off both the map and the eviction queue.
+     * @param entry
+     *         The {@link Entry}.
+     */
+    private void forget(final Entry entry)
+    {
+        entriesByKey.remove(entry.idempotencyKey, entry);
+
+        if (entriesByAge.remove(entry))
+        {
+            queuedEntryCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * A remembered checkout for one idempotency key.
+     */
+    private static class Entry
+    {
+        /**
+         * The {@link String} idempotency key.
+         */
+        final private String idempotencyKey;
+
+        /**
+         * The potentially null {@link Object} holding the parameters of the request that the key was first used with.
+         */
+        final private Object request;
+
+        /**
+         * The {@link System#nanoTime()} at which the checkout started.
+         */
+        final private long createdNanos;
+
+        /**
+         * The {@link CompletableFuture} completed with the {@link RentalAgreement} once the checkout finishes.
+         */
+        final private CompletableFuture<RentalAgreement> result = new CompletableFuture<>();
+
+        /**
+         * Constructor for {@link Entry}.
+         * @param idempotencyKey
+         *         The {@link String} idempotency key.
+         * @param request
+         *         The potentially null {@link Object} holding the parameters of the request.
+         * @param createdNanos
+         *         The {@link System#nanoTime()} at which the checkout started.
+         */
+        private Entry(final String idempotencyKey, final Object request, final long createdNanos)
+        {
+            this.idempotencyKey = idempotencyKey;
+            this.request = request;
+            this.createdNanos = createdNanos;
+        }
+
+        /**
+         * Waits for the checkout to finish.
+         * @return A potentially null {@link RentalAgreement}.
+         */
+        private RentalAgreement await()
+        {
+            try
+            {
+                return result.join();
+            } catch (CompletionException exception)
+            {
+                if (exception.getCause() instanceof RuntimeException)
+                {
+                    throw (RuntimeException) exception.getCause();
+                }
+                throw exception;
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event timing one phase of a {@link RentalStore} checkout, so that a recording can break
+ * checkout latency down by phase. Disabled by default. Enable it in a recording's settings with
+ * rentalstore.CheckoutPhase#enabled=true.
+ * @author Eli Charleville
+ */
+@Name("rentalstore.CheckoutPhase")
+@Label("Checkout Phase")
+@Category("Rental Store")
+@Description("One phase of a rental store checkout")
+@Enabled(false)
+@StackTrace(false)
+public class CheckoutPhaseEvent extends Event
+{
+    /**
+     * The phase validating the checkout arguments.
+     */
+    public static final String VALIDATION = "Validation";
+
+    /**
+     * The phase looking the tool up by tool code.
+     */
+    public static final String TOOL_LOOKUP = "Tool lookup";
+
+    /**
+     * The phase counting the days to charge.
+     */
+    public static final String CHARGE_DAY_COUNTING = "Charge day counting";
+
+    /**
+     * The phase counting the holidays in the rental period.
+     */
+    public static final String HOLIDAY_COUNTING = "Holiday counting";
+
+    /**
+     * The phase calculating the charges.
+     */
+    public static final String PRICING = "Pricing";
+
+    /**
+     * The {@link EventType} of this event, used to check whether it is enabled.
+     */
+    private static final EventType EVENT_TYPE = EventType.getEventType(CheckoutPhaseEvent.class);
+
+    /**
+     * The {@link String} name of the phase.
+     */
+    @Label("Phase")
+    private final String phase;
+
+    /**
+     * The {@link String} identifier for the tool.
+     */
+    @Label("Tool Code")
+    private final String toolCode;
+
+    /**
+     * The number of days to rent the tool.
+     */
+    @Label("Rental Days")
+    private final int rentalDays;
+
+    /**
+     * The number of days that the customer will be charged for, or -1 if not known by the end of the phase.
+     */
+    @Label("Charge Days")
+    private int chargeDays = -1;
+
+    /**
+     * Constructor for {@link CheckoutPhaseEvent}.
+     * @param phase
+     *         The {@link String} name of the phase.
+     * @param toolCode
+     *         The {@link String} identifier for the tool.
+     * @param rentalDays
+     *         The number of days to rent the tool.
+     */
+    private CheckoutPhaseEvent(final String phase, final String toolCode, final int rentalDays)
+    {
+        this.phase = phase;
+        this.toolCode = toolCode;
+        this.rentalDays = rentalDays;
+    }
+
+    /**
+     * @return True if the event is enabled in a running recording, so that callers can skip building event fields
+     *         that cost something to build.
+     */
+    public static boolean isRecording()
+    {
+        return EVENT_TYPE.isEnabled();
+    }
+
+    /**
+     * Starts timing a checkout phase.
+     * @param phase
+     *         The {@link String} name of the phase.
+     * @param toolCode
+     *         The {@link String} identifier for the tool.
+     * @param rentalDays
+     *         The number of days to rent the tool.
+     * @return The started {@link CheckoutPhaseEvent}.
+     */
+    public static CheckoutPhaseEvent start(final String phase, final String toolCode, final int rentalDays)
+    {
+        final CheckoutPhaseEvent event = new CheckoutPhaseEvent(phase, toolCode, rentalDays);
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Stops timing the phase and commits the event if it is enabled and over its threshold.
+     * @param chargeDays
+     *         The number of charge days, or -1 if not known by the end of the phase.
+     */
+    public void finish(final int chargeDays)
+    {
+        end();
+
+        if (shouldCommit())
+        {
+            this.chargeDays = chargeDays;
+            commit();
+        }
+    }
+}
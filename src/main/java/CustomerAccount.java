@@ -0,0 +1,113 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents a customer of a {@link RentalStore} and the {@link RentalAgreement}s they have open. Only open
+ * agreements are kept, so answering questions about them does not depend on how long the customer's history is.
+ * Changes are made by the {@link RentalStore} while it holds the account's lock.
+ * @author Eli Charleville
+ */
+public class CustomerAccount
+{
+    /**
+     * The {@link String} identifier for the customer.
+     */
+    final private String customerId;
+
+    /**
+     * The {@link Map} of open {@link RentalAgreement}s by {@link String} tool code.
+     */
+    final private Map<String, RentalAgreement> openRentalAgreementsByToolCode = new LinkedHashMap<>();
+
+    /**
+     * The number of open rental agreements.
+     */
+    private volatile int openRentalCount;
+
+    /**
+     * The number of rental agreements ever opened.
+     */
+    private volatile long totalRentalCount;
+
+    /**
+     * Constructor for {@link CustomerAccount}.
+     * @param customerId
+     *         The {@link String} identifier for the customer.
+     */
+    public CustomerAccount(final String customerId)
+    {
+        this.customerId = customerId;
+    }
+
+    /**
+     * @return The {@link String} identifier for the customer.
+     */
+    public String getCustomerId()
+    {
+        return customerId;
+    }
+
+    /**
+     * @return The number of open rental agreements.
+     */
+    public int getOpenRentalCount()
+    {
+        return openRentalCount;
+    }
+
+    /**
+     * @return The number of rental agreements ever opened.
+     */
+    public long getTotalRentalCount()
+    {
+        return totalRentalCount;
+    }
+
+    /**
+     * @return The {@link List} of open {@link RentalAgreement}s, oldest first.
+     */
+    public synchronized List<RentalAgreement> getOpenRentalAgreements()
+    {
+        return new ArrayList<>(openRentalAgreementsByToolCode.values());
+    }
+
+    /**
+     * Gets the open {@link RentalAgreement} for a tool. The caller must hold the account's lock.
+     * @param toolCode
+     *         The {@link String} tool code.
+     * @return The potentially null open {@link RentalAgreement}. Null if the customer has no open agreement for the
+     *         tool.
+     */
+    RentalAgreement getOpenRentalAgreement(final String toolCode)
+    {
+        return openRentalAgreementsByToolCode.get(toolCode);
+    }
+
+    /**
+     * Adds an open {@link RentalAgreement}. The caller must hold the account's lock.
+     * @param rentalAgreement
+     *         The {@link RentalAgreement}.
+     */
+    void open(final RentalAgreement rentalAgreement)
+    {
+        openRentalAgreementsByToolCode.put(rentalAgreement.getToolCode(), rentalAgreement);
+        openRentalCount = openRentalAgreementsByToolCode.size();
+        totalRentalCount++;
+    }
+
+    /**
+     * Removes the open {@link RentalAgreement} for a tool. The caller must hold the account's lock.
+     * @param toolCode
+     *         The {@link String} tool code.
+     * @return The potentially null closed {@link RentalAgreement}. Null if the customer has no open agreement for
+     *         the tool.
+     */
+    RentalAgreement close(final String toolCode)
+    {
+        final RentalAgreement rentalAgreement = openRentalAgreementsByToolCode.remove(toolCode);
+        openRentalCount = openRentalAgreementsByToolCode.size();
+        return rentalAgreement;
+    }
+}
@@ -0,0 +1,233 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * An immutable set of {@link DiscountRule}s compiled into a decision table indexed by {@link ToolType} ordinal,
+ * {@link ToolBrand} ordinal and rental length bucket. Each cell of the table holds the rules that can apply to it
+ * ordered from the largest discount to the smallest, so resolving the best discount is a couple of array lookups
+ * followed by a check of the rules' checkout date windows.
+ * @author Eli Charleville
+ */
+public class DiscountPolicy
+{
+    /**
+     * The cached {@link ToolType} values, indexed by ordinal.
+     */
+    private static final ToolType[] TOOL_TYPES = ToolType.values();
+
+    /**
+     * The cached {@link ToolBrand} values, indexed by ordinal.
+     */
+    private static final ToolBrand[] TOOL_BRANDS = ToolBrand.values();
+
+    /**
+     * The largest number of rental days that the bucket lookup table covers. Longer rentals find their bucket by a
+     * binary search of the bucket thresholds, so a rule with a huge minimum rental length cannot blow up the table.
+     */
+    private static final int LOOKUP_TABLE_RENTAL_DAYS = 366;
+
+    /**
+     * The {@link DiscountPolicy} that grants no discounts.
+     */
+    public static final DiscountPolicy NONE = compile(List.of());
+
+    /**
+     * The rental length bucket by number of rental days, for rental days below the largest bucket threshold or
+     * {@link #LOOKUP_TABLE_RENTAL_DAYS}, whichever is smaller.
+     */
+    final private int[] bucketByRentalDays;
+
+    /**
+     * The smallest number of rental days of each rental length bucket, in ascending order.
+     */
+    final private int[] bucketThresholds;
+
+    /**
+     * The number of rental length buckets.
+     */
+    final private int bucketCount;
+
+    /**
+     * The indexes of the rules for each cell, ordered from the largest discount to the smallest.
+     */
+    final private int[][] ruleIndexesByCell;
+
+    /**
+     * The first checkout epoch day of each rule.
+     */
+    final private long[] startEpochDays;
+
+    /**
+     * The last checkout epoch day of each rule.
+     */
+    final private long[] endEpochDays;
+
+    /**
+     * The discount percentage of each rule.
+     */
+    final private int[] discountPercentages;
+
+    /**
+     * Constructor for {@link DiscountPolicy}.
+     * @param bucketByRentalDays
+     *         The rental length bucket by number of rental days.
+     * @param bucketThresholds
+     *         The smallest number of rental days of each rental length bucket, in ascending order.
+     * @param bucketCount
+     *         The number of rental length buckets.
+     * @param ruleIndexesByCell
+     *         The indexes of the rules for each cell.
+     * @param startEpochDays
+     *         The first checkout epoch day of each rule.
+     * @param endEpochDays
+     *         The last checkout epoch day of each rule.
+     * @param discountPercentages
+     *         The discount percentage of each rule.
+     */
+    private DiscountPolicy(final int[] bucketByRentalDays, final int[] bucketThresholds, final int bucketCount,
+                           final int[][] ruleIndexesByCell, final long[] startEpochDays, final long[] endEpochDays,
+                           final int[] discountPercentages)
+    {
+        this.bucketByRentalDays = bucketByRentalDays;
+        this.bucketThresholds = bucketThresholds;
+        this.bucketCount = bucketCount;
+        this.ruleIndexesByCell = ruleIndexesByCell;
+        this.startEpochDays = startEpochDays;
+        this.endEpochDays = endEpochDays;
+        this.discountPercentages = discountPercentages;
+    }
+
+    /**
+     * Compiles a {@link List} of {@link DiscountRule}s into a {@link DiscountPolicy}.
+     * @param discountRules
+     *         The {@link List} of {@link DiscountRule}s.
+     * @return The compiled {@link DiscountPolicy}.
+     */
+    public static DiscountPolicy compile(final List<DiscountRule> discountRules)
+    {
+        final List<DiscountRule> rules = new ArrayList<>(discountRules);
+        rules.sort(Comparator.comparingInt(DiscountRule::getDiscountPercentage).reversed());
+
+        final long[] startEpochDays = new long[rules.size()];
+        final long[] endEpochDays = new long[rules.size()];
+        final int[] discountPercentages = new int[rules.size()];
+
+        final TreeSet<Integer> thresholds = new TreeSet<>();
+        thresholds.add(1);
+
+        for (int ruleIndex = 0; ruleIndex < rules.size(); ruleIndex++)
+        {
+            final DiscountRule rule = rules.get(ruleIndex);
+
+            startEpochDays[ruleIndex] = rule.getStartDate() == null ? Long.MIN_VALUE :
+                    rule.getStartDate().toEpochDay();
+            endEpochDays[ruleIndex] = rule.getEndDate() == null ? Long.MAX_VALUE : rule.getEndDate().toEpochDay();
+            discountPercentages[ruleIndex] = rule.getDiscountPercentage();
+
+            thresholds.add(rule.getMinimumRentalDays());
+        }
+
+        final int[] bucketThresholds = thresholds.stream().mapToInt(Integer::intValue).toArray();
+        final int bucketCount = bucketThresholds.length;
+
+        final int[] bucketByRentalDays =
+                new int[Math.min(bucketThresholds[bucketCount - 1], LOOKUP_TABLE_RENTAL_DAYS)];
+        for (int bucket = 0, rentalDays = 0; rentalDays < bucketByRentalDays.length; rentalDays++)
+        {
+            while (bucket + 1 < bucketCount && bucketThresholds[bucket + 1] <= rentalDays)
+            {
+                bucket++;
+            }
+            bucketByRentalDays[rentalDays] = bucket;
+        }
+
+        final int[][] ruleIndexesByCell = new int[TOOL_TYPES.length * TOOL_BRANDS.length * bucketCount][];
+
+        for (final ToolType toolType : TOOL_TYPES)
+        {
+            for (final ToolBrand toolBrand : TOOL_BRANDS)
+            {
+                for (int bucket = 0; bucket < bucketCount; bucket++)
+                {
+                    final List<Integer> cellRules = new ArrayList<>();
+
+                    for (int ruleIndex = 0; ruleIndex < rules.size(); ruleIndex++)
+                    {
+                        final DiscountRule rule = rules.get(ruleIndex);
+
+                        if ((rule.getToolType() == null || rule.getToolType() == toolType)
+                                && (rule.getToolBrand() == null || rule.getToolBrand() == toolBrand)
+                                && rule.getMinimumRentalDays() <= bucketThresholds[bucket])
+                        {
+                            cellRules.add(ruleIndex);
+
+                            // A rule without a date window always applies, so no smaller discount can win.
+                            if (startEpochDays[ruleIndex] == Long.MIN_VALUE
+                                    && endEpochDays[ruleIndex] == Long.MAX_VALUE)
+                            {
+                                break;
+                            }
+                        }
+                    }
+
+                    ruleIndexesByCell[(toolType.ordinal() * TOOL_BRANDS.length + toolBrand.ordinal()) * bucketCount
+                            + bucket] = cellRules.stream().mapToInt(Integer::intValue).toArray();
+                }
+            }
+        }
+
+        return new DiscountPolicy(bucketByRentalDays, bucketThresholds, bucketCount, ruleIndexesByCell,
+                startEpochDays, endEpochDays, discountPercentages);
+    }
+
+    /**
+     * Resolves the best discount percentage for a rental.
+     * @param toolType
+     *         The {@link ToolType} of the rented tool.
+     * @param toolBrand
+     *         The {@link ToolBrand} of the rented tool.
+     * @param rentalDays
+     *         The number of rental days. Must be greater than or equal to 1.
+     * @param checkoutDate
+     *         The {@link LocalDate} checkout date.
+     * @return The largest discount percentage of the matching rules, or 0 if no rule matches.
+     */
+    public int resolveDiscountPercentage(final ToolType toolType, final ToolBrand toolBrand, final int rentalDays,
+                                         final LocalDate checkoutDate)
+    {
+        final int bucket;
+
+        if (rentalDays < bucketByRentalDays.length)
+        {
+            bucket = bucketByRentalDays[rentalDays];
+        } else
+        {
+            final int searchIndex = Arrays.binarySearch(bucketThresholds, rentalDays);
+            bucket = searchIndex >= 0 ? searchIndex : -searchIndex - 2;
+        }
+
+        final int[] ruleIndexes = ruleIndexesByCell[(toolType.ordinal() * TOOL_BRANDS.length + toolBrand.ordinal())
+                * bucketCount + bucket];
+
+        if (ruleIndexes.length == 0)
+        {
+            return 0;
+        }
+
+        final long checkoutEpochDay = checkoutDate.toEpochDay();
+
+        for (final int ruleIndex : ruleIndexes)
+        {
+            if (checkoutEpochDay >= startEpochDays[ruleIndex] && checkoutEpochDay <= endEpochDays[ruleIndex])
+            {
+                return discountPercentages[ruleIndex];
+            }
+        }
+
+        return 0;
+    }
+}
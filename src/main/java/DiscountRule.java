@@ -0,0 +1,139 @@
+import java.time.LocalDate;
+
+/**
+ * Represents a promotion that grants a discount percentage to rentals that match it, such as a seasonal discount
+ * on a {@link ToolType}, a {@link ToolBrand} partnership, or a long rental tier.
+ * @author Eli Charleville
+ */
+public class DiscountRule
+{
+    /**
+     * The potentially null {@link ToolType} the rule applies to. Null if the rule applies to every tool type.
+     */
+    final private ToolType toolType;
+
+    /**
+     * The potentially null {@link ToolBrand} the rule applies to. Null if the rule applies to every tool brand.
+     */
+    final private ToolBrand toolBrand;
+
+    /**
+     * The minimum number of rental days for the rule to apply.
+     */
+    final private int minimumRentalDays;
+
+    /**
+     * The potentially null first {@link LocalDate} checkout date the rule applies to. Null if the rule has no start.
+     */
+    final private LocalDate startDate;
+
+    /**
+     * The potentially null last {@link LocalDate} checkout date the rule applies to. Null if the rule has no end.
+     */
+    final private LocalDate endDate;
+
+    /**
+     * The discount percent in this format: %<Discount Percent>
+     */
+    final private int discountPercentage;
+
+    /**
+     * Constructor for {@link DiscountRule}.
+     * @param toolType
+     *         The potentially null {@link ToolType} the rule applies to. Null if the rule applies to every tool type.
+     * @param toolBrand
+     *         The potentially null {@link ToolBrand} the rule applies to. Null if the rule applies to every tool
+     *         brand.
+     * @param minimumRentalDays
+     *         The minimum number of rental days for the rule to apply.
+     * @param startDate
+     *         The potentially null first {@link LocalDate} checkout date the rule applies to.
+     * @param endDate
+     *         The potentially null last {@link LocalDate} checkout date the rule applies to.
+     * @param discountPercentage
+     *         The discount percent in this format: %<Discount Percent>
+     * @throws IllegalArgumentException
+     *         If minimumRentalDays < 1.
+     * @throws IllegalArgumentException
+     *         If the discount percentage is not between 0 and 100 (inclusive).
+     * @throws IllegalArgumentException
+     *         If the end date is before the start date.
+     */
+    public DiscountRule(final ToolType toolType, final ToolBrand toolBrand, final int minimumRentalDays,
+                        final LocalDate startDate, final LocalDate endDate, final int discountPercentage)
+            throws IllegalArgumentException
+    {
+        if (minimumRentalDays < 1)
+        {
+            throw new IllegalArgumentException("The minimum rental day count must be greater than or equal to 1. " +
+                    "Minimum rental day count: " + minimumRentalDays);
+        }
+
+        if (discountPercentage > 100 || discountPercentage < 0)
+        {
+            throw new IllegalArgumentException("The discount percentage value must be a number from 0 to 100. " +
+                    "Discount percentage value: " + discountPercentage);
+        }
+
+        if (startDate != null && endDate != null && endDate.isBefore(startDate))
+        {
+            throw new IllegalArgumentException("The end date must not be before the start date. Start date: " +
+                    startDate + ", end date: " + endDate);
+        }
+
+        this.toolType = toolType;
+        this.toolBrand = toolBrand;
+        this.minimumRentalDays = minimumRentalDays;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.discountPercentage = discountPercentage;
+    }
+
+    /**
+     * @return The potentially null {@link ToolType}.
+     */
+    public ToolType getToolType()
+    {
+        return toolType;
+    }
+
+    /**
+     * @return The potentially null {@link ToolBrand}.
+     */
+    public ToolBrand getToolBrand()
+    {
+        return toolBrand;
+    }
+
+    /**
+     * @return The minimum number of rental days.
+     */
+    public int getMinimumRentalDays()
+    {
+        return minimumRentalDays;
+    }
+
+    /**
+     * @return The potentially null {@link LocalDate} start date.
+     */
+    public LocalDate getStartDate()
+    {
+        return startDate;
+    }
+
+    /**
+     * @return The potentially null {@link LocalDate} end date.
+     */
+    public LocalDate getEndDate()
+    {
+        return endDate;
+    }
+
+    /**
+     * @return The discount percent in format: %<discount percent>
+     */
+    public int getDiscountPercentage()
+    {
+        return discountPercentage;
+    }
+}
@@ -0,0 +1,306 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Prices every {@link Tool} of a fleet for a given checkout date and rental length. The tools are snapshotted into
+ * primitive arrays of daily charges in millionths of a dollar and charge flag masks, grouped by {@link ToolType}, so
+ * that a quote works out the weekday, weekend and holiday counts of the rental period once and then prices every
+ * tool with a table lookup and a multiplication. Charges are rounded half up to whole cents, as a checkout rounds
+ * them. Later changes to the tools are not seen by an existing {@link FleetQuoter}.
+ * @author Eli Charleville
+ */
+public class FleetQuoter
+{
+    /**
+     * The charge flag mask bit set if the daily rental fee applies on weekdays.
+     */
+    private static final int WEEKDAY_CHARGE = 1;
+
+    /**
+     * The charge flag mask bit set if the daily rental fee applies on weekends.
+     */
+    private static final int WEEKEND_CHARGE = 2;
+
+    /**
+     * The charge flag mask bit set if the daily rental fee applies on holidays.
+     */
+    private static final int HOLIDAY_CHARGE = 4;
+
+    /**
+     * The scale of the stored daily charges, meaning that daily charges are stored in millionths of a dollar.
+     */
+    private static final int DAILY_CHARGE_SCALE = 6;
+
+    /**
+     * The number of millionths of a dollar in a cent.
+     */
+    private static final long MICROS_PER_CENT = 10_000;
+
+    /**
+     * The largest daily charge in millionths of a dollar that is stored as a primitive.
+     */
+    private static final BigDecimal MAXIMUM_DAILY_CHARGE_MICROS = BigDecimal.valueOf(Integer.MAX_VALUE);
+
+    /**
+     * The {@link String} tool codes, grouped by {@link ToolType}.
+     */
+    final private String[] toolCodes;
+
+    /**
+     * The {@link ToolType} of each tool.
+     */
+    final private ToolType[] toolTypes;
+
+    /**
+     * The daily charge of each tool in millionths of a dollar. No more than {@link Integer#MAX_VALUE}, so that
+     * multiplying it by a number of charge days cannot overflow.
+     */
+    final private long[] dailyChargeMicros;
+
+    /**
+     * The exact {@link BigDecimal} daily charge of each tool whose daily charge does not fit in
+     * {@link #dailyChargeMicros}, or null for every other tool.
+     */
+    final private BigDecimal[] exactDailyCharges;
+
+    /**
+     * The charge flag mask of each tool.
+     */
+    final private byte[] chargeMasks;
+
+    /**
+     * The index of the first tool of each {@link ToolType} by ordinal, followed by the number of tools.
+     */
+    final private int[] toolTypeOffsets;
+
+    /**
+     * Constructor for {@link FleetQuoter}.
+     * @param tools
+     *         The {@link Collection} of {@link Tool}s to quote. Their fields are read without their locks, so tools
+     *         that may change meanwhile should be copies, as {@link RentalStore#createFleetQuoter()} passes.
+     */
+    public FleetQuoter(final Collection<Tool> tools)
+    {
+        final List<Tool> sortedTools = new ArrayList<>(tools);
+        sortedTools.sort(Comparator.comparing(Tool::getToolType).thenComparing(Tool::getToolCode));
+
+        final int toolCount = sortedTools.size();
+
+        toolCodes = new String[toolCount];
+        toolTypes = new ToolType[toolCount];
+        dailyChargeMicros = new long[toolCount];
+        exactDailyCharges = new BigDecimal[toolCount];
+        chargeMasks = new byte[toolCount];
+        toolTypeOffsets = new int[ToolType.values().length + 1];
+
+        for (int index = 0; index < toolCount; index++)
+        {
+            final Tool tool = sortedTools.get(index);
+
+            toolCodes[index] = tool.getToolCode();
+            toolTypes[index] = tool.getToolType();
+
+            final BigDecimal dailyCharge = tool.getDailyCharge();
+
+            if (dailyCharge.scale() <= DAILY_CHARGE_SCALE && dailyCharge.signum() >= 0
+                    && dailyCharge.movePointRight(DAILY_CHARGE_SCALE).compareTo(MAXIMUM_DAILY_CHARGE_MICROS) <= 0)
+            {
+                dailyChargeMicros[index] = dailyCharge.movePointRight(DAILY_CHARGE_SCALE).longValueExact();
+            } else
+            {
+                exactDailyCharges[index] = dailyCharge;
+            }
+
+            chargeMasks[index] = (byte) ((tool.isWeekdayCharge() ? WEEKDAY_CHARGE : 0)
+                    | (tool.isWeekendCharge() ? WEEKEND_CHARGE : 0)
+                    | (tool.isHolidayCharge() ? HOLIDAY_CHARGE : 0));
+
+            toolTypeOffsets[tool.getToolType().ordinal() + 1]++;
+        }
+
+        for (int ordinal = 1; ordinal < toolTypeOffsets.length; ordinal++)
+        {
+            toolTypeOffsets[ordinal] += toolTypeOffsets[ordinal - 1];
+        }
+    }
+
+    /**
+     * Prices every tool of the fleet for a given rental.
+     * @param rentalDays
+     *         The number of requested days to rent the tools.
+     * @param checkoutDate
+     *         The {@link LocalDate} checkout date.
+     * @return The {@link Quote} of every tool.
+     * @throws IllegalArgumentException
+     *         If rentalDays < 1.
+     */
+    public Quote quote(final int rentalDays, final LocalDate checkoutDate) throws IllegalArgumentException
+    {
+        if (rentalDays < 1)
+        {
+            throw new IllegalArgumentException("The rental day count must be greater than or equal to 1. Rental day " +
+                    "count: " + rentalDays);
+        }
+
+        final LocalDate dueDate = checkoutDate.plusDays(rentalDays);
+
+        // The rental period is the days after the checkout date up to and including the due date.
+        final int firstDayOfWeek = checkoutDate.plusDays(1L).getDayOfWeek().getValue();
+        int weekendDays = (rentalDays / 7) * 2;
+        for (int day = 0; day < rentalDays % 7; day++)
+        {
+            final int dayOfWeek = (firstDayOfWeek - 1 + day) % 7 + 1;
+            if (dayOfWeek == DayOfWeek.SATURDAY.getValue() || dayOfWeek == DayOfWeek.SUNDAY.getValue())
+            {
+                weekendDays++;
+            }
+        }
+        final int weekdays = rentalDays - weekendDays;
+        final int holidays = RentalStore.getNumberOfHolidayInstances(checkoutDate, dueDate);
+
+        final int[] chargeDaysByMask = new int[(WEEKDAY_CHARGE | WEEKEND_CHARGE | HOLIDAY_CHARGE) + 1];
+        for (int mask = 0; mask < chargeDaysByMask.length; mask++)
+        {
+            chargeDaysByMask[mask] = ((mask & WEEKDAY_CHARGE) != 0 ? weekdays : 0)
+                    + ((mask & WEEKEND_CHARGE) != 0 ? weekendDays : 0)
+                    - ((mask & HOLIDAY_CHARGE) != 0 ? 0 : holidays);
+        }
+
+        final int toolCount = toolCodes.length;
+        final int[] chargeDays = new int[toolCount];
+        final long[] preDiscountChargeCents = new long[toolCount];
+
+        for (int index = 0; index < toolCount; index++)
+        {
+            final int toolChargeDays = chargeDaysByMask[chargeMasks[index]];
+            chargeDays[index] = toolChargeDays;
+
+            if (exactDailyCharges[index] == null)
+            {
+                // Rounds half up to whole cents, the same way a checkout rounds the pre-discount charge.
+                preDiscountChargeCents[index] = (toolChargeDays * dailyChargeMicros[index] + MICROS_PER_CENT / 2)
+                        / MICROS_PER_CENT;
+            } else
+            {
+                preDiscountChargeCents[index] = BigDecimal.valueOf(toolChargeDays).multiply(exactDailyCharges[index])
+                        .setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+            }
+        }
+
+        return new Quote(chargeDays, preDiscountChargeCents);
+    }
+
+    /**
+     * The prices of every tool of a fleet for one rental, grouped by {@link ToolType} in ordinal order and by
+     * {@link String} tool code within a tool type.
+     */
+    public class Quote
+    {
+        /**
+         * The number of days that each tool is charged for.
+         */
+        final private int[] chargeDays;
+
+        /**
+         * The pre-discount charge of each tool in cents.
+         */
+        final private long[] preDiscountChargeCents;
+
+        /**
+         * Constructor for {@link Quote}.
+         * @param chargeDays
+         *         The number of days that each tool is charged for.
+         * @param preDiscountChargeCents
+         *         The pre-discount charge of each tool in cents.
+         */
+        private Quote(final int[] chargeDays, final long[] preDiscountChargeCents)
+        {
+            this.chargeDays = chargeDays;
+            this.preDiscountChargeCents = preDiscountChargeCents;
+        }
+
+        /**
+         * @return The number of quoted tools.
+         */
+        public int size()
+        {
+            return chargeDays.length;
+        }
+
+        /**
+         * @param toolType
+         *         The {@link ToolType}.
+         * @return The index of the first quoted tool of the {@link ToolType}.
+         */
+        public int fromIndex(final ToolType toolType)
+        {
+            return toolTypeOffsets[toolType.ordinal()];
+        }
+
+        /**
+         * @param toolType
+         *         The {@link ToolType}.
+         * @return The index after the last quoted tool of the {@link ToolType}.
+         */
+        public int toIndex(final ToolType toolType)
+        {
+            return toolTypeOffsets[toolType.ordinal() + 1];
+        }
+
+        /**
+         * @param index
+         *         The index of the quoted tool.
+         * @return The {@link String} tool code.
+         */
+        public String getToolCode(final int index)
+        {
+            return toolCodes[index];
+        }
+
+        /**
+         * @param index
+         *         The index of the quoted tool.
+         * @return The {@link ToolType}.
+         */
+        public ToolType getToolType(final int index)
+        {
+            return toolTypes[index];
+        }
+
+        /**
+         * @param index
+         *         The index of the quoted tool.
+         * @return The number of charge days.
+         */
+        public int getChargeDays(final int index)
+        {
+            return chargeDays[index];
+        }
+
+        /**
+         * @param index
+         *         The index of the quoted tool.
+         * @return The pre-discount charge in cents.
+         */
+        public long getPreDiscountChargeCents(final int index)
+        {
+            return preDiscountChargeCents[index];
+        }
+
+        /**
+         * @param index
+         *         The index of the quoted tool.
+         * @return The {@link BigDecimal} pre-discount charge.
+         */
+        public BigDecimal getPreDiscountCharge(final int index)
+        {
+            return BigDecimal.valueOf(preDiscountChargeCents[index], 2);
+        }
+    }
+}
@@ -0,0 +1,260 @@
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps timestamped versions of the availability and daily charge of every {@link Tool}, so that audits can ask what
+ * the inventory looked like at a past point in time. Each tool's versions form an immutable chain from newest to
+ * oldest, so reads walk the chain without locking and never block writers. Versions that fall out of the retention
+ * window are dropped by {@link #collectGarbage()}, which can be scheduled to run in the background.
+ * @author Eli Charleville
+ */
+public class InventoryHistory
+{
+    /**
+     * The {@link Map} of the newest {@link ToolVersion} by {@link String} tool code.
+     */
+    final private ConcurrentHashMap<String, ToolVersion> newestVersionsByToolCode = new ConcurrentHashMap<>();
+
+    /**
+     * The {@link Duration} that versions are kept for after they are replaced.
+     */
+    final private Duration retention;
+
+    /**
+     * The {@link Clock} that versions are timestamped with.
+     */
+    final private Clock clock;
+
+    /**
+     * Constructor for {@link InventoryHistory}.
+     * @param retention
+     *         The {@link Duration} that versions are kept for after they are replaced.
+     * @param clock
+     *         The {@link Clock} that versions are timestamped with.
+     * @throws IllegalArgumentException
+     *         If retention is negative.
+     */
+    public InventoryHistory(final Duration retention, final Clock clock) throws IllegalArgumentException
+    {
+        if (retention.isNegative())
+        {
+            throw new IllegalArgumentException("The retention must not be negative. Retention: " + retention);
+        }
+
+        this.retention = retention;
+        this.clock = clock;
+    }
+
+    /**
+     * Records the current availability and daily charge of a {@link Tool} as its newest version. Callers must hold
+     * the {@link Tool}'s lock so that versions are recorded in the order the changes were made.
+     * @param tool
+     *         The {@link Tool}.
+     */
+    public void record(final Tool tool)
+    {
+        final Instant now = clock.instant();
+
+        final ToolVersion newest = newestVersionsByToolCode.compute(tool.getToolCode(), (toolCode, previous) ->
+                new ToolVersion(previous == null || now.isAfter(previous.timestamp) ? now : previous.timestamp,
+                        tool.isAvailable(), tool.getDailyCharge(), previous));
+
+        prune(newest, now.minus(retention));
+    }
+
+    /**
+     * Returns the version of a tool in effect at a given point in time.
+     * @param toolCode
+     *         The {@link String} tool code.
+     * @param timestamp
+     *         The {@link Instant} to read at.
+     * @return The potentially null {@link ToolVersion}. Null if the tool is unknown at that time, either because it
+     *         was not recorded yet or because its versions from that time have been garbage collected.
+     */
+    public ToolVersion versionAt(final String toolCode, final Instant timestamp)
+    {
+        ToolVersion version = newestVersionsByToolCode.get(toolCode);
+
+        while (version != null && version.timestamp.isAfter(timestamp))
+        {
+            version = version.previous;
+        }
+
+        return version;
+    }
+
+    /**
+     * Returns the version of every known tool in effect at a given point in time.
+     * @param timestamp
+     *         The {@link Instant} to read at.
+     * @return The {@link Map} of {@link ToolVersion}s by {@link String} tool code.
+     */
+    public Map<String, ToolVersion> snapshotAt(final Instant timestamp)
+    {
+        final Map<String, ToolVersion> snapshot = new HashMap<>();
+
+        for (final String toolCode : newestVersionsByToolCode.keySet())
+        {
+            final ToolVersion version = versionAt(toolCode, timestamp);
+
+            if (version != null)
+            {
+                snapshot.put(toolCode, version);
+            }
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Returns the tools that were rented out at a given point in time.
+     * @param timestamp
+     *         The {@link Instant} to read at.
+     * @return The {@link List} of {@link String} tool codes of the tools that were not available.
+     */
+    public List<String> toolCodesOutAt(final Instant timestamp)
+    {
+        final List<String> toolCodes = new ArrayList<>();
+
+        snapshotAt(timestamp).forEach((toolCode, version) ->
+        {
+            if (!version.isAvailable())
+            {
+                toolCodes.add(toolCode);
+            }
+        });
+
+        return toolCodes;
+    }
+
+    /**
+     * Drops every version that was replaced before the retention window. The version in effect at the start of the
+     * window is kept.
+     */
+    public void collectGarbage()
+    {
+        final Instant horizon = clock.instant().minus(retention);
+
+        for (final ToolVersion newest : newestVersionsByToolCode.values())
+        {
+            prune(newest, horizon);
+        }
+    }
+
+    /**
+     * Runs {@link #collectGarbage()} in the background at a fixed interval.
+     * @param scheduledExecutorService
+     *         The {@link ScheduledExecutorService} to run on.
+     * @param interval
+     *         The {@link Duration} between runs.
+     * @return The {@link ScheduledFuture} that cancels the runs.
+     */
+    public ScheduledFuture<?> scheduleGarbageCollection(final ScheduledExecutorService scheduledExecutorService,
+                                                        final Duration interval)
+    {
+        return scheduledExecutorService.scheduleWithFixedDelay(this::collectGarbage, interval.toNanos(),
+                interval.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Unlinks the versions older than the version in effect at the horizon.
+     * @param newest
+     *         The newest {@link ToolVersion} of a tool.
+     * @param horizon
+     *         The {@link Instant} start of the retention window.
+     */
+    private static void prune(final ToolVersion newest, final Instant horizon)
+    {
+        ToolVersion version = newest;
+
+        while (version != null && version.timestamp.isAfter(horizon))
+        {
+            version = version.previous;
+        }
+
+        if (version != null)
+        {
+            version.previous = null;
+        }
+    }
+
+    /**
+     * The availability and daily charge of a tool from a point in time until its next version.
+     */
+    public static class ToolVersion
+    {
+        /**
+         * The {@link Instant} the version took effect.
+         */
+        final private Instant timestamp;
+
+        /**
+         * True if the tool was available to rent, false otherwise.
+         */
+        final private boolean available;
+
+        /**
+         * The {@link BigDecimal} daily charge in US dollars.
+         */
+        final private BigDecimal dailyCharge;
+
+        /**
+         * The potentially null previous {@link ToolVersion}. Null if it is the oldest version kept.
+         */
+        private volatile ToolVersion previous;
+
+        /**
+         * Constructor for {@link ToolVersion}.
+         * @param timestamp
+         *         The {@link Instant} the version took effect.
+         * @param available
+         *         True if the tool was available to rent, false otherwise.
+         * @param dailyCharge
+         *         The {@link BigDecimal} daily charge in US dollars.
+         * @param previous
+         *         The potentially null previous {@link ToolVersion}.
+         */
+        private ToolVersion(final Instant timestamp, final boolean available, final BigDecimal dailyCharge,
+                            final ToolVersion previous)
+        {
+            this.timestamp = timestamp;
+            this.available = available;
+            this.dailyCharge = dailyCharge;
+            this.previous = previous;
+        }
+
+        /**
+         * @return The {@link Instant} the version took effect.
+         */
+        public Instant getTimestamp()
+        {
+            return timestamp;
+        }
+
+        /**
+         * @return True if the tool was available to rent, false otherwise.
+         */
+        public boolean isAvailable()
+        {
+            return available;
+        }
+
+        /**
+         * @return The {@link BigDecimal} daily charge.
+         */
+        public BigDecimal getDailyCharge()
+        {
+            return dailyCharge;
+        }
+    }
+}
@@ -0,0 +1,753 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Streams {@link RentalAgreement}s to CSV or JSON Lines files. Agreements are serialized field by field, in the
+ * order of {@link RentalAgreement}'s getters, into a fixed set of reusable direct buffers that are written out with
+ * one gathering {@link FileChannel} write once they fill up. The output can be gzip compressed on the fly, and a new
+ * file is started once the current one reaches a given size.
+ * @author Eli Charleville
+ */
+public class RentalAgreementExporter implements Closeable
+{
+    /**
+     * The output file formats.
+     */
+    public enum Format
+    {
+        /**
+         * Comma separated values with a header row.
+         */
+        CSV(".csv"),
+
+        /**
+         * One JSON object per line.
+         */
+        JSON(".jsonl");
+
+        /**
+         * The {@link String} file name extension.
+         */
+        final private String extension;
+
+        /**
+         * Constructor for {@link Format}.
+         * @param extension
+         *         The {@link String} file name extension.
+         */
+        Format(final String extension)
+        {
+            this.extension = extension;
+        }
+    }
+
+    /**
+     * The {@link String} field names, in the order of {@link RentalAgreement}'s getters.
+     */
+    private static final String[] FIELD_NAMES = {"toolCode", "toolType", "toolBrand", "rentalDays", "chargeDays",
+            "checkoutDate", "dueDate", "dailyCharge", "preDiscountCharge", "discountAmount", "finalCharge",
+            "discountPercent"};
+
+    /**
+     * The number of buffers that agreements are serialized into before they are written out.
+     */
+    private static final int BUFFER_COUNT = 4;
+
+    /**
+     * The size in bytes of each buffer.
+     */
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    /**
+     * The gzip member header: magic number, deflate method, no flags, no modification time, no extra flags, unknown
+     * operating system.
+     */
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    /**
+     * The empty input given to the {@link Deflater} once the buffers have been compressed.
+     */
+    private static final byte[] NO_INPUT = new byte[0];
+
+    /**
+     * The {@link Path} of the directory that the files are written to.
+     */
+    final private Path directory;
+
+    /**
+     * The {@link String} file name that each file's sequence number and extension are appended to.
+     */
+    final private String baseName;
+
+    /**
+     * The {@link Format} of the files.
+     */
+    final private Format format;
+
+    /**
+     * True if the files are gzip compressed, false otherwise.
+     */
+    final private boolean gzip;
+
+    /**
+     * The size in bytes that a file is closed at and a new file started. Files may run over by up to one write.
+     */
+    final private long maximumFileBytes;
+
+    /**
+     * The reusable direct buffers that agreements are serialized into.
+     */
+    final private ByteBuffer[] buffers = new ByteBuffer[BUFFER_COUNT];
+
+    /**
+     * The reusable direct buffer that a single agreement is serialized into.
+     */
+    final private ByteBuffer record = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+    /**
+     * The potentially null reusable direct buffer that compressed output is written from. Null if not gzip.
+     */
+    final private ByteBuffer compressed;
+
+    /**
+     * The potentially null {@link Deflater}. Null if not gzip.
+     */
+    final private Deflater deflater;
+
+    /**
+     * The {@link CRC32} of the uncompressed bytes of the current gzip file.
+     */
+    final private CRC32 crc32 = new CRC32();
+
+    /**
+     * The {@link List} of {@link Path}s of the files written so far.
+     */
+    final private List<Path> files = new ArrayList<>();
+
+    /**
+     * The index of the buffer that agreements are currently serialized into.
+     */
+    private int currentBuffer;
+
+    /**
+     * The potentially null {@link FileChannel} of the current file. Null if no file is open.
+     */
+    private FileChannel channel;
+
+    /**
+     * The number of bytes written to the current file.
+     */
+    private long fileBytes;
+
+    /**
+     * The number of uncompressed bytes written to the current file.
+     */
+    private long uncompressedFileBytes;
+
+    /**
+     * Constructor for {@link RentalAgreementExporter}.
+     * @param directory
+     *         The {@link Path} of the directory to write the files to.
+     * @param baseName
+     *         The {@link String} file name to append each file's sequence number and extension to.
+     * @param format
+     *         The {@link Format} of the files.
+     * @param gzip
+     *         True if the files are gzip compressed, false otherwise.
+     * @param maximumFileBytes
+     *         The size in bytes to close a file at and start a new file.
+     * @throws IllegalArgumentException
+     *         If maximumFileBytes < 1.
+     */
+    public RentalAgreementExporter(final Path directory, final String baseName, final Format format,
+                                   final boolean gzip, final long maximumFileBytes) throws IllegalArgumentException
+    {
+        if (maximumFileBytes < 1)
+        {
+            throw new IllegalArgumentException("The maximum file size must be greater than or equal to 1. Maximum " +
+                    "file size: " + maximumFileBytes);
+        }
+
+        this.directory = directory;
+        this.baseName = baseName;
+        this.format = format;
+        this.gzip = gzip;
+        this.maximumFileBytes = maximumFileBytes;
+
+        for (int index = 0; index < BUFFER_COUNT; index++)
+        {
+            buffers[index] = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        }
+
+        compressed = gzip ? ByteBuffer.allocateDirect(BUFFER_BYTES) : null;
+        deflater = gzip ? new Deflater(Deflater.DEFAULT_COMPRESSION, true) : null;
+    }
+
+    /**
+     * Exports a {@link RentalAgreement}.
+     * @param rentalAgreement
+     *         The {@link RentalAgreement}.
+     * @throws IOException
+     *         If a file cannot be written.
+     */
+    public void export(final RentalAgreement rentalAgreement) throws IOException
+    {
+        record.clear();
+        if (format == Format.CSV)
+        {
+            putCsv(rentalAgreement);
+        } else
+        {
+            putJson(rentalAgreement);
+        }
+        record.flip();
+
+        if (buffers[currentBuffer].remaining() < record.remaining())
+        {
+            currentBuffer++;
+
+            if (currentBuffer == BUFFER_COUNT)
+            {
+                flush();
+            }
+        }
+
+        buffers[currentBuffer].put(record);
+    }
+
+    /**
+     * Exports every {@link RentalAgreement} of a {@link RentalAgreementStore} checked out on a given date.
+     * @param rentalAgreementStore
+     *         The {@link RentalAgreementStore}.
+     * @param checkoutDate
+     *         The {@link LocalDate} checkout date.
+     * @return The number of exported agreements.
+     * @throws IOException
+     *         If a file cannot be written.
+     */
+    public int export(final RentalAgreementStore rentalAgreementStore, final LocalDate checkoutDate)
+            throws IOException
+    {
+        try
+        {
+            return rentalAgreementStore.forEachCheckedOutBetween(checkoutDate, checkoutDate, rentalAgreement ->
+            {
+                try
+                {
+                    export(rentalAgreement);
+                } catch (IOException exception)
+                {
+                    throw new UncheckedIOException(exception);
+                }
+            });
+        } catch (UncheckedIOException exception)
+        {
+            throw exception.getCause();
+        }
+    }
+
+    /**
+     * Writes out every exported agreement that has not been written yet, starting a new file first if the current
+     * one has reached the maximum file size.
+     * @throws IOException
+     *         If a file cannot be written.
+     */
+    public void flush() throws IOException
+    {
+        final int bufferCount = Math.min(currentBuffer + 1, BUFFER_COUNT);
+
+        for (int index = 0; index < bufferCount; index++)
+        {
+            buffers[index].flip();
+        }
+
+        if (channel != null && fileBytes >= maximumFileBytes)
+        {
+            closeFile();
+        }
+
+        if (buffers[0].hasRemaining())
+        {
+            if (channel == null)
+            {
+                openFile();
+            }
+
+            write(buffers, bufferCount);
+        }
+
+        for (final ByteBuffer buffer : buffers)
+        {
+            buffer.clear();
+        }
+        currentBuffer = 0;
+    }
+
+    /**
+     * @return The unmodifiable {@link List} of {@link Path}s of the files written so far.
+     */
+    public List<Path> getFiles()
+    {
+        return Collections.unmodifiableList(files);
+    }
+
+    /**
+     * Writes out every exported agreement and closes the current file. If nothing was exported, one empty file is
+     * still written, holding only the CSV header row or an empty gzip member, so that every export leaves a file.
+     * @throws IOException
+     *         If a file cannot be written.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        flush();
+
+        if (files.isEmpty())
+        {
+            openFile();
+        }
+
+        if (channel != null)
+        {
+            closeFile();
+        }
+
+        if (deflater != null)
+        {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Opens the next file, writing the CSV header row and gzip header as needed.
+     * @throws IOException
+     *         If the file cannot be opened.
+     */
+    private void openFile() throws IOException
+    {
+        final Path file = directory.resolve(String.format("%s-%04d%s%s", baseName, files.size() + 1,
+                format.extension, gzip ? ".gz" : ""));
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        files.add(file);
+        fileBytes = 0;
+        uncompressedFileBytes = 0;
+
+        if (gzip)
+        {
+            writeFully(ByteBuffer.wrap(GZIP_HEADER));
+            deflater.reset();
+            crc32.reset();
+        }
+
+        if (format == Format.CSV)
+        {
+            final ByteBuffer header = ByteBuffer.wrap(String.join(",", FIELD_NAMES).concat("\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            write(new ByteBuffer[]{header}, 1);
+        }
+    }
+
+    /**
+     * Closes the current file, writing the gzip trailer as needed.
+     * @throws IOException
+     *         If the file cannot be written.
+     */
+    private void closeFile() throws IOException
+    {
+        try
+        {
+            if (gzip)
+            {
+                deflater.finish();
+                while (!deflater.finished())
+                {
+                    deflater.deflate(compressed);
+                    drainCompressed();
+                }
+
+                final ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+                trailer.putInt((int) crc32.getValue()).putInt((int) uncompressedFileBytes).flip();
+                writeFully(trailer);
+            }
+        } finally
+        {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Writes the given buffers to the current file, compressing them if gzip.
+     * @param sources
+     *         The flipped {@link ByteBuffer}s to write.
+     * @param count
+     *         The number of buffers to write.
+     * @throws IOException
+     *         If the file cannot be written.
+     */
+    private void write(final ByteBuffer[] sources, final int count) throws IOException
+    {
+        if (!gzip)
+        {
+            long remaining = 0;
+            for (int index = 0; index < count; index++)
+            {
+                remaining += sources[index].remaining();
+            }
+
+            while (remaining > 0)
+            {
+                final long written = channel.write(sources, 0, count);
+                remaining -= written;
+                fileBytes += written;
+            }
+            return;
+        }
+
+        for (int index = 0; index < count; index++)
+        {
+            final ByteBuffer source = sources[index];
+
+            uncompressedFileBytes += source.remaining();
+            crc32.update(source.duplicate());
+            deflater.setInput(source);
+
+            while (!deflater.needsInput())
+            {
+                deflater.deflate(compressed);
+                drainCompressed();
+            }
+        }
+
+        // The deflater keeps a reference to its last input, which is about to be cleared and reused.
+        deflater.setInput(NO_INPUT);
+
+        // Sync flush so that the file size is known when deciding whether to start a new file.
+        boolean full;
+        do
+        {
+            deflater.deflate(compressed, Deflater.SYNC_FLUSH);
+            full = !compressed.hasRemaining();
+
+            compressed.flip();
+            writeFully(compressed);
+            compressed.clear();
+        } while (full);
+    }
+
+    /**
+     * Writes out the compressed buffer once it is full.
+     * @throws IOException
+     *         If the file cannot be written.
+     */
+    private void drainCompressed() throws IOException
+    {
+        if (!compressed.hasRemaining() || deflater.finished())
+        {
+            compressed.flip();
+            writeFully(compressed);
+            compressed.clear();
+        }
+    }
+
+    /**
+     * Writes every remaining byte of a buffer to the current file.
+     * @param source
+     *         The flipped {@link ByteBuffer} to write.
+     * @throws IOException
+     *         If the file cannot be written.
+     */
+    private void writeFully(final ByteBuffer source) throws IOException
+    {
+        while (source.hasRemaining())
+        {
+            fileBytes += channel.write(source);
+        }
+    }
+
+    /**
+     * Serializes a {@link RentalAgreement} into the record buffer as a CSV row.
+     * @param rentalAgreement
+     *         The {@link RentalAgreement}.
+     */
+    private void putCsv(final RentalAgreement rentalAgreement)
+    {
+        putCsvString(rentalAgreement.getToolCode());
+        record.put((byte) ',');
+        putAscii(rentalAgreement.getToolType().name());
+        record.put((byte) ',');
+        putAscii(rentalAgreement.getToolBrand().name());
+        record.put((byte) ',');
+        putLong(rentalAgreement.getRentalDays());
+        record.put((byte) ',');
+        putLong(rentalAgreement.getChargeDays());
+        record.put((byte) ',');
+        putDate(rentalAgreement.getCheckoutDate());
+        record.put((byte) ',');
+        putDate(rentalAgreement.getDueDate());
+        record.put((byte) ',');
+        putAmount(rentalAgreement.getDailyCharge());
+        record.put((byte) ',');
+        putAmount(rentalAgreement.getPreDiscountCharge());
+        record.put((byte) ',');
+        putAmount(rentalAgreement.getDiscountAmount());
+        record.put((byte) ',');
+        putAmount(rentalAgreement.getFinalCharge());
+        record.put((byte) ',');
+        putLong(rentalAgreement.getDiscountPercent());
+        record.put((byte) '\n');
+    }
+
+    /**
+     * Serializes a {@link RentalAgreement} into the record buffer as a line holding one JSON object.
+     * @param rentalAgreement
+     *         The {@link RentalAgreement}.
+     */
+    private void putJson(final RentalAgreement rentalAgreement)
+    {
+        putJsonName(0, true);
+        putJsonString(rentalAgreement.getToolCode());
+        putJsonName(1, false);
+        putJsonString(rentalAgreement.getToolType().name());
+        putJsonName(2, false);
+        putJsonString(rentalAgreement.getToolBrand().name());
+        putJsonName(3, false);
+        putLong(rentalAgreement.getRentalDays());
+        putJsonName(4, false);
+        putLong(rentalAgreement.getChargeDays());
+        putJsonName(5, false);
+        record.put((byte) '"');
+        putDate(rentalAgreement.getCheckoutDate());
+        record.put((byte) '"');
+        putJsonName(6, false);
+        record.put((byte) '"');
+        putDate(rentalAgreement.getDueDate());
+        record.put((byte) '"');
+        putJsonName(7, false);
+        putAmount(rentalAgreement.getDailyCharge());
+        putJsonName(8, false);
+        putAmount(rentalAgreement.getPreDiscountCharge());
+        putJsonName(9, false);
+        putAmount(rentalAgreement.getDiscountAmount());
+        putJsonName(10, false);
+        putAmount(rentalAgreement.getFinalCharge());
+        putJsonName(11, false);
+        putLong(rentalAgreement.getDiscountPercent());
+        record.put((byte) '}').put((byte) '\n');
+    }
+
+    /**
+     * Puts a JSON object member name and the colon that follows it.
+     * @param field
+     *         The index of the field name.
+     * @param first
+     *         True if this is the first member of the object, false otherwise.
+     */
+    private void putJsonName(final int field, final boolean first)
+    {
+        record.put((byte) (first ? '{' : ','));
+        record.put((byte) '"');
+        putAscii(FIELD_NAMES[field]);
+        record.put((byte) '"').put((byte) ':');
+    }
+
+    /**
+     * Puts a {@link String} as a CSV field, quoting it if it holds a comma, quote or line break.
+     * @param value
+     *         The {@link String} value.
+     */
+    private void putCsvString(final String value)
+    {
+        boolean quote = false;
+        for (int index = 0; index < value.length() && !quote; index++)
+        {
+            final char character = value.charAt(index);
+            quote = character == ',' || character == '"' || character == '\n' || character == '\r';
+        }
+
+        if (!quote)
+        {
+            putUtf8(value);
+            return;
+        }
+
+        record.put((byte) '"');
+        putUtf8(value.replace("\"", "\"\""));
+        record.put((byte) '"');
+    }
+
+    /**
+     * Puts a {@link String} as a quoted JSON string.
+     * @param value
+     *         The {@link String} value.
+     */
+    private void putJsonString(final String value)
+    {
+        record.put((byte) '"');
+
+        for (int index = 0; index < value.length(); index++)
+        {
+            final char character = value.charAt(index);
+
+            if (character == '"' || character == '\\')
+            {
+                record.put((byte) '\\').put((byte) character);
+            } else if (character < 0x20)
+            {
+                putAscii(String.format("\\u%04x", (int) character));
+            } else if (character < 0x80)
+            {
+                record.put((byte) character);
+            } else
+            {
+                final int end = index + Character.charCount(value.codePointAt(index));
+                putUtf8(value.substring(index, end));
+                index = end - 1;
+            }
+        }
+
+        record.put((byte) '"');
+    }
+
+    /**
+     * Puts a {@link String} encoded as UTF-8, without allocating if it is all ASCII.
+     * @param value
+     *         The {@link String} value.
+     */
+    private void putUtf8(final String value)
+    {
+        for (int index = 0; index < value.length(); index++)
+        {
+            if (value.charAt(index) >= 0x80)
+            {
+                record.put(value.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+        }
+
+        putAscii(value);
+    }
+
+    /**
+     * Puts an ASCII {@link String}.
+     * @param value
+     *         The ASCII {@link String} value.
+     */
+    private void putAscii(final String value)
+    {
+        for (int index = 0; index < value.length(); index++)
+        {
+            record.put((byte) value.charAt(index));
+        }
+    }
+
+    /**
+     * Puts a {@link LocalDate} in the ISO yyyy-MM-dd format.
+     * @param date
+     *         The {@link LocalDate}.
+     */
+    private void putDate(final LocalDate date)
+    {
+        final int year = date.getYear();
+
+        if (year < 1000 || year > 9999)
+        {
+            putAscii(date.toString());
+            return;
+        }
+
+        putDigits(year, 4);
+        record.put((byte) '-');
+        putDigits(date.getMonthValue(), 2);
+        record.put((byte) '-');
+        putDigits(date.getDayOfMonth(), 2);
+    }
+
+    /**
+     * Puts a {@link BigDecimal} US dollar amount with two decimal places.
+     * @param amount
+     *         The {@link BigDecimal} amount.
+     */
+    private void putAmount(final BigDecimal amount)
+    {
+        if (amount.scale() != 2 || amount.unscaledValue().bitLength() > 62)
+        {
+            putAscii(amount.toPlainString());
+            return;
+        }
+
+        long cents = amount.unscaledValue().longValue();
+
+        if (cents < 0)
+        {
+            record.put((byte) '-');
+            cents = -cents;
+        }
+
+        putLong(cents / 100);
+        record.put((byte) '.');
+        putDigits((int) (cents % 100), 2);
+    }
+
+    /**
+     * Puts a long in decimal.
+     * @param value
+     *         The long value.
+     */
+    private void putLong(final long value)
+    {
+        if (value < 0)
+        {
+            putAscii(Long.toString(value));
+            return;
+        }
+
+        long divisor = 1;
+        while (value / divisor >= 10)
+        {
+            divisor *= 10;
+        }
+
+        for (; divisor > 0; divisor /= 10)
+        {
+            record.put((byte) ('0' + value / divisor % 10));
+        }
+    }
+
+    /**
+     * Puts a non-negative int in decimal, left padded with zeros to a given width.
+     * @param value
+     *         The non-negative int value.
+     * @param width
+     *         The number of digits.
+     */
+    private void putDigits(final int value, final int width)
+    {
+        int divisor = 1;
+        for (int digit = 1; digit < width; digit++)
+        {
+            divisor *= 10;
+        }
+
+        for (; divisor > 0; divisor /= 10)
+        {
+            record.put((byte) ('0' + value / divisor % 10));
+        }
+    }
+}
@@ -0,0 +1,404 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * An append-only, columnar store of historical {@link RentalAgreement}s. Every field of an agreement is held as a
+ * primitive in its own off-heap column, so the store costs a few dozen bytes per agreement and adds nothing for the
+ * garbage collector to trace. Agreements are handed back as {@link RentalAgreement} views that are built from the
+ * columns on demand.
+ * @author Eli Charleville
+ */
+public class RentalAgreementStore
+{
+    /**
+     * The number of agreements that the columns are sized for when no capacity is given.
+     */
+    private static final int DEFAULT_INITIAL_CAPACITY = 1024;
+
+    /**
+     * The largest number of agreements that the store can hold, limited by the widest column fitting in one
+     * {@link ByteBuffer}.
+     */
+    static final int MAXIMUM_CAPACITY = Integer.MAX_VALUE / Long.BYTES;
+
+    /**
+     * The scale of the stored charges, meaning that charges are stored as whole cents.
+     */
+    private static final int CENTS_SCALE = 2;
+
+    /**
+     * The cached {@link ToolType} values, indexed by ordinal.
+     */
+    private static final ToolType[] TOOL_TYPES = ToolType.values();
+
+    /**
+     * The cached {@link ToolBrand} values, indexed by ordinal.
+     */
+    private static final ToolBrand[] TOOL_BRANDS = ToolBrand.values();
+
+    /**
+     * The {@link List} of distinct {@link String} tool codes, indexed by tool slot.
+     */
+    final private List<String> toolCodesBySlot = new ArrayList<>();
+
+    /**
+     * The {@link Map} of tool slots by {@link String} tool code.
+     */
+    final private Map<String, Integer> slotsByToolCode = new HashMap<>();
+
+    /**
+     * The {@link List} of distinct {@link BigDecimal} daily charges, indexed by daily charge slot. Daily charges are
+     * kept exactly as configured, which may be in fractions of a cent.
+     */
+    final private List<BigDecimal> dailyChargesBySlot = new ArrayList<>();
+
+    /**
+     * The {@link Map} of daily charge slots by {@link BigDecimal} daily charge.
+     */
+    final private Map<BigDecimal, Integer> slotsByDailyCharge = new HashMap<>();
+
+    /**
+     * The tool slot column. Four bytes per agreement.
+     */
+    private ByteBuffer toolSlots;
+
+    /**
+     * The {@link ToolType} ordinal column. One byte per agreement.
+     */
+    private ByteBuffer toolTypes;
+
+    /**
+     * The {@link ToolBrand} ordinal column. One byte per agreement.
+     */
+    private ByteBuffer toolBrands;
+
+    /**
+     * The rental days column. Four bytes per agreement.
+     */
+    private ByteBuffer rentalDays;
+
+    /**
+     * The charge days column. Four bytes per agreement.
+     */
+    private ByteBuffer chargeDays;
+
+    /**
+     * The checkout date column as epoch days. Four bytes per agreement.
+     */
+    private ByteBuffer checkoutEpochDays;
+
+    /**
+     * The due date column as epoch days. Four bytes per agreement.
+     */
+    private ByteBuffer dueEpochDays;
+
+    /**
+     * The daily charge slot column. Four bytes per agreement.
+     */
+    private ByteBuffer dailyChargeSlots;
+
+    /**
+     * The pre-discount charge column in cents. Eight bytes per agreement.
+     */
+    private ByteBuffer preDiscountChargeCents;
+
+    /**
+     * The discount amount column in cents. Eight bytes per agreement.
+     */
+    private ByteBuffer discountAmountCents;
+
+    /**
+     * The final charge column in cents. Eight bytes per agreement.
+     */
+    private ByteBuffer finalChargeCents;
+
+    /**
+     * The discount percent column. One byte per agreement.
+     */
+    private ByteBuffer discountPercents;
+
+    /**
+     * The number of agreements that the columns currently have room for.
+     */
+    private int capacity;
+
+    /**
+     * The number of agreements in the store.
+     */
+    private int size;
+
+    /**
+     * Constructor for {@link RentalAgreementStore} with a default initial capacity.
+     */
+    public RentalAgreementStore()
+    {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructor for {@link RentalAgreementStore}.
+     * @param initialCapacity
+     *         The number of agreements to size the columns for. The columns grow as needed.
+     * @throws IllegalArgumentException
+     *         If initialCapacity < 1 or initialCapacity > {@link #MAXIMUM_CAPACITY}.
+     */
+    public RentalAgreementStore(final int initialCapacity) throws IllegalArgumentException
+    {
+        if (initialCapacity < 1 || initialCapacity > MAXIMUM_CAPACITY)
+        {
+            throw new IllegalArgumentException("The initial capacity must be between 1 and " + MAXIMUM_CAPACITY +
+                    " (inclusive). Initial capacity: " + initialCapacity);
+        }
+
+        allocateColumns(initialCapacity);
+    }
+
+    /**
+     * Appends a {@link RentalAgreement} to the store.
+     * @param rentalAgreement
+     *         The {@link RentalAgreement} to append.
+     * @return The index of the appended agreement.
+     * @throws ArithmeticException
+     *         If a charge of the agreement other than the daily charge does not fit in whole cents.
+     * @throws IllegalStateException
+     *         If the store already holds {@link #MAXIMUM_CAPACITY} agreements.
+     */
+    public synchronized int append(final RentalAgreement rentalAgreement)
+            throws ArithmeticException, IllegalStateException
+    {
+        if (size == capacity)
+        {
+            if (capacity == MAXIMUM_CAPACITY)
+            {
+                throw new IllegalStateException("The store is full. Size: " + size);
+            }
+
+            allocateColumns((int) Math.min(2L * capacity, MAXIMUM_CAPACITY));
+        }
+
+        final int index = size;
+
+        toolSlots.putInt(index * Integer.BYTES, slotOf(rentalAgreement.getToolCode()));
+        toolTypes.put(index, (byte) rentalAgreement.getToolType().ordinal());
+        toolBrands.put(index, (byte) rentalAgreement.getToolBrand().ordinal());
+        rentalDays.putInt(index * Integer.BYTES, rentalAgreement.getRentalDays());
+        chargeDays.putInt(index * Integer.BYTES, rentalAgreement.getChargeDays());
+        checkoutEpochDays.putInt(index * Integer.BYTES, (int) rentalAgreement.getCheckoutDate().toEpochDay());
+        dueEpochDays.putInt(index * Integer.BYTES, (int) rentalAgreement.getDueDate().toEpochDay());
+        dailyChargeSlots.putInt(index * Integer.BYTES, dailyChargeSlotOf(rentalAgreement.getDailyCharge()));
+        preDiscountChargeCents.putLong(index * Long.BYTES, toCents(rentalAgreement.getPreDiscountCharge()));
+        discountAmountCents.putLong(index * Long.BYTES, toCents(rentalAgreement.getDiscountAmount()));
+        finalChargeCents.putLong(index * Long.BYTES, toCents(rentalAgreement.getFinalCharge()));
+        discountPercents.put(index, (byte) rentalAgreement.getDiscountPercent());
+
+        size++;
+
+        return index;
+    }
+
+    /**
+     * @return The number of agreements in the store.
+     */
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns a {@link RentalAgreement} view of the agreement at the given index.
+     * @param index
+     *         The index returned by {@link #append(RentalAgreement)}.
+     * @return The {@link RentalAgreement} at the index.
+     * @throws IndexOutOfBoundsException
+     *         If the index is not within the store.
+     */
+    public synchronized RentalAgreement get(final int index) throws IndexOutOfBoundsException
+    {
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+
+        return view(index);
+    }
+
+    /**
+     * Passes every agreement with a checkout date from the given start date to the given end date (inclusive) to the
+     * given {@link Consumer}, in the order that they were appended. Only the checkout date column is read for
+     * agreements outside of the range.
+     * @param from
+     *         The first {@link LocalDate} checkout date to include.
+     * @param to
+     *         The last {@link LocalDate} checkout date to include.
+     * @param action
+     *         The {@link Consumer} to pass each matching {@link RentalAgreement} to.
+     * @return The number of matching agreements.
+     */
+    public synchronized int forEachCheckedOutBetween(final LocalDate from, final LocalDate to,
+                                                     final Consumer<RentalAgreement> action)
+    {
+        final int fromEpochDay = (int) from.toEpochDay();
+        final int toEpochDay = (int) to.toEpochDay();
+
+        int matches = 0;
+
+        for (int index = 0; index < size; index++)
+        {
+            final int epochDay = checkoutEpochDays.getInt(index * Integer.BYTES);
+
+            if (epochDay >= fromEpochDay && epochDay <= toEpochDay)
+            {
+                action.accept(view(index));
+                matches++;
+            }
+        }
+
+        return matches;
+    }
+
+    /**
+     * Sums the final charge of every agreement with a checkout date from the given start date to the given end date
+     * (inclusive) without building any {@link RentalAgreement} views.
+     * @param from
+     *         The first {@link LocalDate} checkout date to include.
+     * @param to
+     *         The last {@link LocalDate} checkout date to include.
+     * @return The {@link BigDecimal} total final charge.
+     */
+    public synchronized BigDecimal sumFinalChargeCheckedOutBetween(final LocalDate from, final LocalDate to)
+    {
+        final int fromEpochDay = (int) from.toEpochDay();
+        final int toEpochDay = (int) to.toEpochDay();
+
+        long totalCents = 0;
+
+        for (int index = 0; index < size; index++)
+        {
+            final int epochDay = checkoutEpochDays.getInt(index * Integer.BYTES);
+
+            if (epochDay >= fromEpochDay && epochDay <= toEpochDay)
+            {
+                totalCents += finalChargeCents.getLong(index * Long.BYTES);
+            }
+        }
+
+        return BigDecimal.valueOf(totalCents, CENTS_SCALE);
+    }
+
+    /**
+     * Builds a {@link RentalAgreement} from the columns at the given index.
+     * @param index
+     *         The index of the agreement. Must be within the store.
+     * @return The {@link RentalAgreement} at the index.
+     */
+    private RentalAgreement view(final int index)
+    {
+        return new RentalAgreement(toolCodesBySlot.get(toolSlots.getInt(index * Integer.BYTES)),
+                TOOL_TYPES[toolTypes.get(index)], TOOL_BRANDS[toolBrands.get(index)],
+                rentalDays.getInt(index * Integer.BYTES), chargeDays.getInt(index * Integer.BYTES),
+                LocalDate.ofEpochDay(checkoutEpochDays.getInt(index * Integer.BYTES)),
+                LocalDate.ofEpochDay(dueEpochDays.getInt(index * Integer.BYTES)),
+                dailyChargesBySlot.get(dailyChargeSlots.getInt(index * Integer.BYTES)),
+                BigDecimal.valueOf(preDiscountChargeCents.getLong(index * Long.BYTES), CENTS_SCALE),
+                BigDecimal.valueOf(discountAmountCents.getLong(index * Long.BYTES), CENTS_SCALE),
+                BigDecimal.valueOf(finalChargeCents.getLong(index * Long.BYTES), CENTS_SCALE),
+                discountPercents.get(index));
+    }
+
+    /**
+     * Returns the tool slot for a given {@link String} tool code, assigning a new slot if the tool code is new.
+     * @param toolCode
+     *         The {@link String} tool code.
+     * @return The tool slot.
+     */
+    private int slotOf(final String toolCode)
+    {
+        return slotsByToolCode.computeIfAbsent(toolCode, code ->
+        {
+            toolCodesBySlot.add(code);
+            return toolCodesBySlot.size() - 1;
+        });
+    }
+
+    /**
+     * Returns the daily charge slot for a given {@link BigDecimal} daily charge, assigning a new slot if the daily
+     * charge is new.
+     * @param dailyCharge
+     *         The {@link BigDecimal} daily charge.
+     * @return The daily charge slot.
+     */
+    private int dailyChargeSlotOf(final BigDecimal dailyCharge)
+    {
+        return slotsByDailyCharge.computeIfAbsent(dailyCharge, charge ->
+        {
+            dailyChargesBySlot.add(charge);
+            return dailyChargesBySlot.size() - 1;
+        });
+    }
+
+    /**
+     * Converts a {@link BigDecimal} US dollar amount to whole cents.
+     * @param amount
+     *         The {@link BigDecimal} amount.
+     * @return The amount in cents.
+     * @throws ArithmeticException
+     *         If the amount has fractions of a cent or does not fit in a long.
+     */
+    private static long toCents(final BigDecimal amount) throws ArithmeticException
+    {
+        return amount.setScale(CENTS_SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Allocates columns for the given number of agreements and copies over any existing agreements.
+     * @param newCapacity
+     *         The number of agreements to allocate the columns for. At most {@link #MAXIMUM_CAPACITY}, so that no
+     *         column size overflows.
+     */
+    private void allocateColumns(final int newCapacity)
+    {
+        toolSlots = grow(toolSlots, newCapacity * Integer.BYTES);
+        toolTypes = grow(toolTypes, newCapacity);
+        toolBrands = grow(toolBrands, newCapacity);
+        rentalDays = grow(rentalDays, newCapacity * Integer.BYTES);
+        chargeDays = grow(chargeDays, newCapacity * Integer.BYTES);
+        checkoutEpochDays = grow(checkoutEpochDays, newCapacity * Integer.BYTES);
+        dueEpochDays = grow(dueEpochDays, newCapacity * Integer.BYTES);
+        dailyChargeSlots = grow(dailyChargeSlots, newCapacity * Integer.BYTES);
+        preDiscountChargeCents = grow(preDiscountChargeCents, newCapacity * Long.BYTES);
+        discountAmountCents = grow(discountAmountCents, newCapacity * Long.BYTES);
+        finalChargeCents = grow(finalChargeCents, newCapacity * Long.BYTES);
+        discountPercents = grow(discountPercents, newCapacity);
+
+        capacity = newCapacity;
+    }
+
+    /**
+     * Allocates a direct {@link ByteBuffer} column and copies the contents of the old column into it.
+     * @param column
+     *         The potentially null old {@link ByteBuffer} column.
+     * @param bytes
+     *         The size of the new column in bytes.
+     * @return The new {@link ByteBuffer} column.
+     */
+    private static ByteBuffer grow(final ByteBuffer column, final int bytes)
+    {
+        final ByteBuffer grown = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+
+        if (column != null)
+        {
+            grown.put(column.duplicate().clear());
+            grown.clear();
+        }
+
+        return grown;
+    }
+}
@@ -1,12 +1,22 @@
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Clock;
 import java.time.DayOfWeek;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.Month;
 import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static java.time.DayOfWeek.*;
 
@@ -17,18 +27,508 @@ import static java.time.DayOfWeek.*;
 public class RentalStore
 {
     /**
-     * The {@link Map} of {@link Tool}s by String tool code.
+     * The {@link Map} of {@link Tool}s by String tool code. A concurrent copy of the given map, so that tools can be
+     * added and removed while checkouts run.
      */
     final private Map<String, Tool> toolsByToolCode;
 
     /**
-     * Constructor for {@link RentalStore}.
+     * The {@link Map} of removed {@link Tool}s by String tool code, kept so that a tool that is removed and added
+     * again, for example while its configuration file is rewritten, keeps its availability instead of coming back
+     * rentable while it is out on rental. Guarded by its own lock, which also makes moving a tool in or out of
+     * {@link #toolsByToolCode} atomic.
+     */
+    final private Map<String, Tool> removedToolsByToolCode = new HashMap<>();
+
+    /**
+     * The {@link DiscountPolicy} used to resolve discounts for checkouts that do not give a discount percentage.
+     * Replaced as a whole so that a checkout always sees one complete policy.
+     */
+    private volatile DiscountPolicy discountPolicy = DiscountPolicy.NONE;
+
+    /**
+     * The {@link CheckoutDeduplicationCache} of {@link RentalAgreement}s by idempotency key.
+     */
+    final private CheckoutDeduplicationCache checkoutDeduplicationCache;
+
+    /**
+     * The {@link InventoryHistory} of the availability and daily charge of every {@link Tool}.
+     */
+    final private InventoryHistory inventoryHistory;
+
+    /**
+     * The {@link Map} of {@link CustomerAccount}s by {@link String} customer ID.
+     */
+    final private Map<String, CustomerAccount> customerAccountsByCustomerId = new ConcurrentHashMap<>();
+
+    /**
+     * The {@link Map} of {@link String} customer IDs by the {@link Tool} that the customer has rented. Changed only
+     * while the tool's lock is held, so that a tool is only ever made available again by closing its renter's
+     * agreement.
+     */
+    final private Map<Tool, String> customerIdsByRentedTool = new ConcurrentHashMap<>();
+
+    /**
+     * The maximum number of rental agreements that a customer may have open at once.
+     */
+    private volatile int maximumOpenRentalsPerCustomer = 3;
+
+    /**
+     * The potentially null {@link ReplicationLog} that every change is shipped to a standby store through. Null if
+     * the store is not replicated.
+     */
+    private volatile ReplicationLog replicationLog;
+
+    /**
+     * The potentially null {@link Set} of customer {@link RentalAgreement}s shipped to the {@link ReplicationLog} while
+     * {@link #startReplication(ReplicationLog)} is shipping the open agreements, compared by identity. Null when no
+     * replication is starting.
+     */
+    private volatile Set<RentalAgreement> rentalAgreementsShippedDuringStart;
+
+    /**
+     * Constructor for {@link RentalStore} that remembers up to 10,000 idempotency keys for 10 minutes and keeps a
+     * year of inventory history.
      * @param toolsByToolCode
      *         The {@link Map} of {@link Tool}s by String tool code.
      */
     public RentalStore(final Map<String, Tool> toolsByToolCode)
     {
-        this.toolsByToolCode = toolsByToolCode;
+        this(toolsByToolCode, new CheckoutDeduplicationCache(10_000, Duration.ofMinutes(10)));
+    }
+
+    /**
+     * Constructor for {@link RentalStore} that keeps a year of inventory history.
+     * @param toolsByToolCode
+     *         The {@link Map} of {@link Tool}s by String tool code.
+     * @param checkoutDeduplicationCache
+     *         The {@link CheckoutDeduplicationCache} of {@link RentalAgreement}s by idempotency key.
+     */
+    public RentalStore(final Map<String, Tool> toolsByToolCode,
+                       final CheckoutDeduplicationCache checkoutDeduplicationCache)
+    {
+        this(toolsByToolCode, checkoutDeduplicationCache, new InventoryHistory(Duration.ofDays(365),
+                Clock.systemUTC()));
+    }
+
+    /**
+     * Constructor for {@link RentalStore}.
+     * @param toolsByToolCode
+     *         The {@link Map} of {@link Tool}s by String tool code.
+     * @param checkoutDeduplicationCache
+     *         The {@link CheckoutDeduplicationCache} of {@link RentalAgreement}s by idempotency key.
+     * @param inventoryHistory
+     *         The {@link InventoryHistory} to record every change to the tools' availability and daily charge in.
+     */
+    public RentalStore(final Map<String, Tool> toolsByToolCode,
+                       final CheckoutDeduplicationCache checkoutDeduplicationCache,
+                       final InventoryHistory inventoryHistory)
+    {
+        this.toolsByToolCode = new ConcurrentHashMap<>(toolsByToolCode);
+        this.checkoutDeduplicationCache = checkoutDeduplicationCache;
+        this.inventoryHistory = inventoryHistory;
+
+        for (final Tool tool : toolsByToolCode.values())
+        {
+            synchronized (tool)
+            {
+                recordToolState(tool);
+            }
+        }
+    }
+
+    /**
+     * @return The {@link InventoryHistory} of the availability and daily charge of every {@link Tool}.
+     */
+    public InventoryHistory getInventoryHistory()
+    {
+        return inventoryHistory;
+    }
+
+    /**
+     * Sets the availability of the tool with a given {@link String} tool code, for example when it is returned, and
+     * records the change in the {@link InventoryHistory}. Making a tool that a customer has rented available returns
+     * it through {@link #returnTool(String, String)}, which closes the customer's agreement.
+     * @param toolCode
+     *         The {@link String} tool identifier.
+     * @param available
+     *         True if the tool is available for rent, false otherwise.
+     */
+    public void setAvailability(final String toolCode, final boolean available)
+    {
+        final Tool tool = toolsByToolCode.get(toolCode);
+
+        while (true)
+        {
+            final String renterCustomerId;
+
+            synchronized (tool)
+            {
+                renterCustomerId = available ? customerIdsByRentedTool.get(tool) : null;
+
+                if (renterCustomerId == null)
+                {
+                    tool.setAvailability(available);
+                    recordToolState(tool);
+                    return;
+                }
+            }
+
+            // The customer's account must be locked before the tool, so the tool's lock is released first.
+            returnTool(renterCustomerId, toolCode);
+        }
+    }
+
+    /**
+     * Sets the daily charge of the tool with a given {@link String} tool code and records the change in the
+     * {@link InventoryHistory}.
+     * @param toolCode
+     *         The {@link String} tool identifier.
+     * @param dailyCharge
+     *         The {@link BigDecimal} daily charge.
+     */
+    public void setDailyCharge(final String toolCode, final BigDecimal dailyCharge)
+    {
+        final Tool tool = toolsByToolCode.get(toolCode);
+
+        synchronized (tool)
+        {
+            tool.setDailyCharge(dailyCharge);
+            recordToolState(tool);
+        }
+    }
+
+    /**
+     * Adds a copy of a {@link Tool}, or if a tool with the same tool code already exists or was removed, updates its
+     * type, brand, daily charge and charge flags to match the given tool in place. The availability of an existing
+     * or removed tool is kept.
+     * @param definition
+     *         The {@link Tool} to copy, or to take the new values from.
+     */
+    public void putTool(final Tool definition)
+    {
+        final String toolCode = definition.getToolCode();
+        Tool tool = toolsByToolCode.get(toolCode);
+        boolean added = false;
+
+        if (tool == null)
+        {
+            synchronized (removedToolsByToolCode)
+            {
+                tool = toolsByToolCode.get(toolCode);
+
+                if (tool == null)
+                {
+                    tool = removedToolsByToolCode.remove(toolCode);
+
+                    if (tool == null)
+                    {
+                        tool = new Tool(toolCode, definition.getToolType(), definition.getToolBrand(),
+                                definition.getDailyCharge(), definition.isWeekdayCharge(),
+                                definition.isWeekendCharge(), definition.isHolidayCharge(),
+                                definition.isAvailable());
+                        added = true;
+                    }
+
+                    toolsByToolCode.put(toolCode, tool);
+                }
+            }
+        }
+
+        synchronized (tool)
+        {
+            if (!added)
+            {
+                tool.setToolType(definition.getToolType());
+                tool.setToolBrand(definition.getToolBrand());
+                tool.setDailyCharge(definition.getDailyCharge());
+                tool.setWeekdayCharge(definition.isWeekdayCharge());
+                tool.setWeekendCharge(definition.isWeekendCharge());
+                tool.setHolidayCharge(definition.isHolidayCharge());
+            }
+
+            recordToolState(tool);
+        }
+    }
+
+    /**
+     * Removes the tool with a given {@link String} tool code. Rental agreements already made for it are unaffected,
+     * and the tool can still be returned. If a tool with the same tool code is added again, it keeps the removed
+     * tool's availability.
+     * @param toolCode
+     *         The {@link String} tool identifier.
+     * @return The potentially null removed {@link Tool}.
+     */
+    public Tool removeTool(final String toolCode)
+    {
+        final Tool tool;
+
+        synchronized (removedToolsByToolCode)
+        {
+            tool = toolsByToolCode.remove(toolCode);
+
+            if (tool != null)
+            {
+                removedToolsByToolCode.put(toolCode, tool);
+            }
+        }
+
+        final ReplicationLog replicationLog = this.replicationLog;
+
+        if (tool != null && replicationLog != null)
+        {
+            replicationLog.appendToolRemoved(toolCode);
+        }
+
+        return tool;
+    }
+
+    /**
+     * Starts shipping every change of the store to a {@link ReplicationLog}. The log is first given the current
+     * state of every {@link Tool} and every open customer {@link RentalAgreement}, so that a standby reading it from
+     * the start ends up with the same state as this store. An agreement opened while the open agreements are being
+     * shipped is shipped only once.
+     * @param replicationLog
+     *         The {@link ReplicationLog}.
+     */
+    public synchronized void startReplication(final ReplicationLog replicationLog)
+    {
+        final Set<RentalAgreement> shippedRentalAgreements = Collections.synchronizedSet(
+                Collections.newSetFromMap(new IdentityHashMap<>()));
+
+        rentalAgreementsShippedDuringStart = shippedRentalAgreements;
+        this.replicationLog = replicationLog;
+
+        for (final Tool tool : toolsByToolCode.values())
+        {
+            synchronized (tool)
+            {
+                replicationLog.appendTool(tool);
+            }
+        }
+
+        for (final CustomerAccount customerAccount : customerAccountsByCustomerId.values())
+        {
+            synchronized (customerAccount)
+            {
+                for (final RentalAgreement rentalAgreement : customerAccount.getOpenRentalAgreements())
+                {
+                    if (!shippedRentalAgreements.contains(rentalAgreement))
+                    {
+                        replicationLog.appendAgreement(customerAccount.getCustomerId(), rentalAgreement);
+                    }
+                }
+            }
+        }
+
+        rentalAgreementsShippedDuringStart = null;
+    }
+
+    /**
+     * @return The potentially null {@link ReplicationLog} that every change is shipped to. Null if the store is not
+     *         replicated.
+     */
+    public ReplicationLog getReplicationLog()
+    {
+        return replicationLog;
+    }
+
+    /**
+     * Opens a {@link RentalAgreement} shipped from a primary store in a customer's account. Used by a
+     * {@link StandbyReplicator}; the tool's availability is shipped separately. An agreement that the account already
+     * holds open is ignored, since a primary that restarts replication ships its open agreements again.
+     * @param customerId
+     *         The {@link String} customer identifier.
+     * @param rentalAgreement
+     *         The {@link RentalAgreement}.
+     * @return True if the agreement was opened, false if the account already held it open.
+     */
+    boolean applyReplicatedAgreement(final String customerId, final RentalAgreement rentalAgreement)
+    {
+        final CustomerAccount customerAccount =
+                customerAccountsByCustomerId.computeIfAbsent(customerId, CustomerAccount::new);
+
+        synchronized (customerAccount)
+        {
+            final RentalAgreement openRentalAgreement =
+                    customerAccount.getOpenRentalAgreement(rentalAgreement.getToolCode());
+
+            if (openRentalAgreement != null && isSameRentalAgreement(openRentalAgreement, rentalAgreement))
+            {
+                return false;
+            }
+
+            customerAccount.open(rentalAgreement);
+
+            final Tool tool = findTool(rentalAgreement.getToolCode());
+
+            if (tool != null)
+            {
+                synchronized (tool)
+                {
+                    customerIdsByRentedTool.put(tool, customerId);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks whether two {@link RentalAgreement}s describe the same rental.
+     * @param first
+     *         The first {@link RentalAgreement}.
+     * @param second
+     *         The second {@link RentalAgreement}.
+     * @return True if both agreements have the same tool, dates, daily charge, discount and final charge.
+     */
+    private static boolean isSameRentalAgreement(final RentalAgreement first, final RentalAgreement second)
+    {
+        return first.getToolCode().equals(second.getToolCode()) && first.getRentalDays() == second.getRentalDays() &&
+                first.getCheckoutDate().equals(second.getCheckoutDate()) &&
+                first.getDueDate().equals(second.getDueDate()) &&
+                first.getDailyCharge().compareTo(second.getDailyCharge()) == 0 &&
+                first.getDiscountPercent() == second.getDiscountPercent() &&
+                first.getFinalCharge().compareTo(second.getFinalCharge()) == 0;
+    }
+
+    /**
+     * Closes a customer's open {@link RentalAgreement} for a tool returned at a primary store. Used by a
+     * {@link StandbyReplicator}; the tool's availability is shipped separately.
+     * @param customerId
+     *         The {@link String} customer identifier.
+     * @param toolCode
+     *         The {@link String} tool identifier.
+     */
+    void applyReplicatedReturn(final String customerId, final String toolCode)
+    {
+        final CustomerAccount customerAccount = customerAccountsByCustomerId.get(customerId);
+
+        if (customerAccount != null)
+        {
+            synchronized (customerAccount)
+            {
+                customerAccount.close(toolCode);
+
+                final Tool tool = findTool(toolCode);
+
+                if (tool != null)
+                {
+                    synchronized (tool)
+                    {
+                        customerIdsByRentedTool.remove(tool, customerId);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The maximum number of rental agreements that a customer may have open at once.
+     */
+    public int getMaximumOpenRentalsPerCustomer()
+    {
+        return maximumOpenRentalsPerCustomer;
+    }
+
+    /**
+     * Sets the maximum number of rental agreements that a customer may have open at once. Agreements already open
+     * are unaffected.
+     * @param maximumOpenRentalsPerCustomer
+     *         The maximum number of open rental agreements.
+     */
+    public void setMaximumOpenRentalsPerCustomer(final int maximumOpenRentalsPerCustomer)
+    {
+        this.maximumOpenRentalsPerCustomer = maximumOpenRentalsPerCustomer;
+    }
+
+    /**
+     * @param customerId
+     *         The {@link String} customer identifier.
+     * @return The potentially null {@link CustomerAccount}. Null if the customer has never checked out a tool.
+     */
+    public CustomerAccount getCustomerAccount(final String customerId)
+    {
+        return customerAccountsByCustomerId.get(customerId);
+    }
+
+    /**
+     * @return The current {@link DiscountPolicy}.
+     */
+    public DiscountPolicy getDiscountPolicy()
+    {
+        return discountPolicy;
+    }
+
+    /**
+     * Atomically replaces the {@link DiscountPolicy}. Checkouts already in progress finish with the old policy.
+     * @param discountPolicy
+     *         The {@link DiscountPolicy}.
+     */
+    public void setDiscountPolicy(final DiscountPolicy discountPolicy)
+    {
+        this.discountPolicy = discountPolicy;
+    }
+
+    /**
+     * @return A {@link FleetQuoter} that prices every {@link Tool} of the store as it is now. Each tool is copied
+     *         under its lock, so a tool being reloaded is priced with either its old or its new values, never a mix.
+     */
+    public FleetQuoter createFleetQuoter()
+    {
+        final List<Tool> tools = new ArrayList<>(toolsByToolCode.size());
+
+        for (final Tool tool : toolsByToolCode.values())
+        {
+            synchronized (tool)
+            {
+                tools.add(snapshot(tool));
+            }
+        }
+
+        return new FleetQuoter(tools);
+    }
+
+    /**
+     * Checks out a tool with a given {@link String} tool code for rental and returns a generated
+     * {@link RentalAgreement}. The discount percentage is the best discount that the current {@link DiscountPolicy}
+     * grants the rental.
+     * @param toolCode
+     *         The {@link String} tool identifier.
+     * @param rentalDays
+     *         The number of requested days to rent the tool.
+     * @param checkoutDate
+     *         The {@link LocalDate}.
+     * @return A potentially null {@link RentalAgreement}.
+     * @throws IllegalArgumentException
+     *         If rentalDays < 1.
+     * @throws IllegalArgumentException
+     *         If no tool has the tool code.
+     */
+    public RentalAgreement checkout(String toolCode, int rentalDays, LocalDate checkoutDate) throws IllegalArgumentException
+    {
+        final CheckoutPhaseEvent validationEvent = CheckoutPhaseEvent.start(CheckoutPhaseEvent.VALIDATION, toolCode,
+                rentalDays);
+        validateRentalDays(rentalDays);
+        validationEvent.finish(-1);
+
+        final CheckoutPhaseEvent toolLookupEvent = CheckoutPhaseEvent.start(CheckoutPhaseEvent.TOOL_LOOKUP, toolCode,
+                rentalDays);
+        final Tool tool = lookUpTool(toolCode);
+        toolLookupEvent.finish(-1);
+
+        final Tool claimedTool = claim(null, tool, toolCode);
+
+        if (claimedTool == null)
+        {
+            return null;
+        }
+
+        final int discountPercentage = discountPolicy.resolveDiscountPercentage(claimedTool.getToolType(),
+                claimedTool.getToolBrand(), rentalDays, checkoutDate);
+
+        return replicate(null, createRentalAgreement(claimedTool, toolCode, rentalDays, discountPercentage,
+                checkoutDate));
     }
 
     /**
@@ -47,37 +547,482 @@ public class RentalStore
      *         If rentalDays < 1.
      * @throws IllegalArgumentException
      *         If the discount percentage is not between 0 and 100 (inclusive).
+     * @throws IllegalArgumentException
+     *         If no tool has the tool code.
      */
     public RentalAgreement checkout(String toolCode, int rentalDays, int discountPercentage, LocalDate checkoutDate) throws IllegalArgumentException
     {
-        if (rentalDays < 1)
+        final CheckoutPhaseEvent validationEvent = CheckoutPhaseEvent.start(CheckoutPhaseEvent.VALIDATION, toolCode,
+                rentalDays);
+        validateRentalDays(rentalDays);
+        validateDiscountPercentage(discountPercentage);
+        validationEvent.finish(-1);
+
+        final CheckoutPhaseEvent toolLookupEvent = CheckoutPhaseEvent.start(CheckoutPhaseEvent.TOOL_LOOKUP, toolCode,
+                rentalDays);
+        final Tool tool = lookUpTool(toolCode);
+        toolLookupEvent.finish(-1);
+
+        return checkout(null, tool, toolCode, rentalDays, discountPercentage, checkoutDate);
+    }
+
+    /**
+     * Checks out a tool with a given {@link String} tool code for rental and returns a generated
+     * {@link RentalAgreement}, unless a checkout with the same idempotency key has already succeeded, in which case
+     * its original {@link RentalAgreement} is returned. The key may only be reused for the same tool code, rental
+     * days, discount percentage and checkout date.
+     * @param idempotencyKey
+     *         The {@link String} key that identifies the checkout request. Retries must reuse the same key.
+     * @param toolCode
+     *         The {@link String} tool identifier.
+     * @param rentalDays
+     *         The number of requested days to rent the tool.
+     * @param discountPercentage
+     *         The discount percent in this format: %<Discount Percent>
+     * @param checkoutDate
+     *         The {@link LocalDate}.
+     * @return A potentially null {@link RentalAgreement}.
+     * @throws IllegalArgumentException
+     *         If rentalDays < 1.
+     * @throws IllegalArgumentException
+     *         If the discount percentage is not between 0 and 100 (inclusive).
+     * @throws IllegalArgumentException
+     *         If no tool has the tool code.
+     * @throws IllegalArgumentException
+     *         If the idempotency key was already used for a checkout with different parameters.
+     */
+    public RentalAgreement checkout(String idempotencyKey, String toolCode, int rentalDays, int discountPercentage,
+                                    LocalDate checkoutDate) throws IllegalArgumentException
+    {
+        final List<Object> request = Arrays.asList(toolCode, rentalDays, discountPercentage, checkoutDate);
+
+        return checkoutDeduplicationCache.getOrCheckout(idempotencyKey, request, () ->
+                checkout(toolCode, rentalDays, discountPercentage, checkoutDate));
+    }
+
+    /**
+     * Checks out a tool with a given {@link String} tool code for rental by a customer and returns a generated
+     * {@link RentalAgreement}. The customer's open rental limit is checked and the tool claimed while the customer's
+     * account is locked, so concurrent checkouts by one customer can never go over the limit.
+     * @param customerId
+     *         The {@link String} customer identifier.
+     * @param toolCode
+     *         The {@link String} tool identifier.
+     * @param rentalDays
+     *         The number of requested days to rent the tool.
+     * @param discountPercentage
+     *         The discount percent in this format: %<Discount Percent>
+     * @param checkoutDate
+     *         The {@link LocalDate}.
+     * @return A potentially null {@link RentalAgreement}. Null if the tool is not available or the customer is at
+     *         their open rental limit.
+     * @throws IllegalArgumentException
+     *         If rentalDays < 1.
+     * @throws IllegalArgumentException
+     *         If the discount percentage is not between 0 and 100 (inclusive).
+     * @throws IllegalArgumentException
+     *         If no tool has the tool code.
+     */
+    public RentalAgreement checkoutForCustomer(String customerId, String toolCode, int rentalDays,
+                                               int discountPercentage, LocalDate checkoutDate)
+            throws IllegalArgumentException
+    {
+        final CheckoutPhaseEvent validationEvent = CheckoutPhaseEvent.start(CheckoutPhaseEvent.VALIDATION, toolCode,
+                rentalDays);
+        validateRentalDays(rentalDays);
+        validateDiscountPercentage(discountPercentage);
+        validationEvent.finish(-1);
+
+        final CheckoutPhaseEvent toolLookupEvent = CheckoutPhaseEvent.start(CheckoutPhaseEvent.TOOL_LOOKUP, toolCode,
+                rentalDays);
+        final Tool tool = lookUpTool(toolCode);
+        toolLookupEvent.finish(-1);
+
+        final CustomerAccount customerAccount =
+                customerAccountsByCustomerId.computeIfAbsent(customerId, CustomerAccount::new);
+
+        synchronized (customerAccount)
         {
-            throw new IllegalArgumentException("The rental day count must be greater than or equal to 1. Rental day " +
-                    "count: " + rentalDays);
+            if (customerAccount.getOpenRentalCount() >= maximumOpenRentalsPerCustomer)
+            {
+                System.out.println("Customer with customer ID: " + customerId + " has reached the limit of " +
+                        maximumOpenRentalsPerCustomer + " open rentals.");
+                return null;
+            }
+
+            final RentalAgreement rentalAgreement = checkout(customerId, tool, toolCode, rentalDays,
+                    discountPercentage, checkoutDate);
+
+            if (rentalAgreement != null)
+            {
+                customerAccount.open(rentalAgreement);
+            }
+
+            return rentalAgreement;
         }
+    }
 
-        if (discountPercentage > 100 || discountPercentage < 0)
+    /**
+     * Returns a tool that a customer has rented, closing their open {@link RentalAgreement} for it and making the
+     * tool available again. The tool is only made available if it is still rented by this customer, so closing a
+     * stale agreement never frees a tool that someone else has rented since.
+     * @param customerId
+     *         The {@link String} customer identifier.
+     * @param toolCode
+     *         The {@link String} tool identifier.
+     * @return The potentially null closed {@link RentalAgreement}. Null if the customer has no open agreement for the
+     *         tool.
+     */
+    public RentalAgreement returnTool(final String customerId, final String toolCode)
+    {
+        final CustomerAccount customerAccount = customerAccountsByCustomerId.get(customerId);
+
+        if (customerAccount == null)
         {
-            throw new IllegalArgumentException("The discount percentage value must be a number from 0 to 100. " +
-                    "Discount percentage value: " + discountPercentage);
+            return null;
+        }
+
+        synchronized (customerAccount)
+        {
+            final RentalAgreement rentalAgreement = customerAccount.close(toolCode);
+            final ReplicationLog replicationLog = this.replicationLog;
+
+            if (rentalAgreement != null && replicationLog != null)
+            {
+                replicationLog.appendReturn(customerId, toolCode);
+            }
+
+            final Tool tool = findTool(toolCode);
+
+            if (tool != null)
+            {
+                synchronized (tool)
+                {
+                    if (customerIdsByRentedTool.remove(tool, customerId))
+                    {
+                        tool.setAvailability(true);
+                        recordToolState(tool);
+                    }
+                }
+            }
+
+            return rentalAgreement;
         }
+    }
 
+    /**
+     * @param toolCode
+     *         The {@link String} tool identifier.
+     * @return The {@link Tool} in the store with the tool code.
+     * @throws IllegalArgumentException
+     *         If no tool in the store has the tool code.
+     */
+    private Tool lookUpTool(final String toolCode) throws IllegalArgumentException
+    {
         final Tool tool = toolsByToolCode.get(toolCode);
 
-        if (!tool.isAvailable())
+        if (tool == null)
+        {
+            throw new IllegalArgumentException("No tool has the tool code: " + toolCode);
+        }
+
+        return tool;
+    }
+
+    /**
+     * @param toolCode
+     *         The {@link String} tool identifier.
+     * @return The potentially null {@link Tool} with the tool code, whether it is in the store or was removed.
+     */
+    private Tool findTool(final String toolCode)
+    {
+        final Tool tool = toolsByToolCode.get(toolCode);
+
+        if (tool != null)
+        {
+            return tool;
+        }
+
+        synchronized (removedToolsByToolCode)
+        {
+            final Tool liveTool = toolsByToolCode.get(toolCode);
+            return liveTool != null ? liveTool : removedToolsByToolCode.get(toolCode);
+        }
+    }
+
+    /**
+     * Checks out a given {@link Tool} for rental and returns a generated {@link RentalAgreement}.
+     * @param customerId
+     *         The potentially null {@link String} customer identifier. Null if the tool is not rented by a customer.
+     * @param tool
+     *         The {@link Tool} to rent.
+     * @param toolCode
+     *         The {@link String} tool identifier.
+     * @param rentalDays
+     *         The number of requested days to rent the tool. Must be greater than or equal to 1.
+     * @param discountPercentage
+     *         The discount percent in this format: %<Discount Percent>. Must be between 0 and 100 (inclusive).
+     * @param checkoutDate
+     *         The {@link LocalDate}.
+     * @return A potentially null {@link RentalAgreement}.
+     */
+    private RentalAgreement checkout(final String customerId, final Tool tool, final String toolCode,
+                                     final int rentalDays, final int discountPercentage,
+                                     final LocalDate checkoutDate)
+    {
+        final Tool claimedTool = claim(customerId, tool, toolCode);
+
+        if (claimedTool == null)
+        {
+            return null;
+        }
+
+        return replicate(customerId, createRentalAgreement(claimedTool, toolCode, rentalDays, discountPercentage,
+                checkoutDate));
+    }
+
+    /**
+     * Claims a given {@link Tool} for rental if it is available.
+     * @param customerId
+     *         The potentially null {@link String} customer identifier. Null if the tool is not rented by a customer.
+     * @param tool
+     *         The {@link Tool} to claim.
+     * @param toolCode
+     *         The {@link String} tool identifier.
+     * @return The potentially null copy of the {@link Tool} taken while it was claimed. Null if the tool is not
+     *         available.
+     */
+    private Tool claim(final String customerId, final Tool tool, final String toolCode)
+    {
+        synchronized (tool)
+        {
+            if (!tool.isAvailable())
+            {
+                System.out.println("Tool with tool code: " + toolCode + " is not available to rent.");
+                return null;
+            }
+
+            tool.setAvailability(false);
+            recordToolState(tool);
+
+            if (customerId != null)
+            {
+                customerIdsByRentedTool.put(tool, customerId);
+            }
+
+            return snapshot(tool);
+        }
+    }
+
+    /**
+     * Checks out several tools together for rental. Either every tool is claimed or, if any of them is not
+     * available, none of them are. The tools are claimed in tool code order, the same order used by every cart
+     * checkout, so that overlapping carts cannot deadlock.
+     * @param toolCodes
+     *         The {@link List} of distinct {@link String} tool identifiers.
+     * @param rentalDays
+     *         The number of requested days to rent the tools.
+     * @param discountPercentage
+     *         The discount percent in this format: %<Discount Percent>
+     * @param checkoutDate
+     *         The {@link LocalDate}.
+     * @return A potentially null {@link CartRentalAgreement} with a {@link RentalAgreement} for each tool code, in
+     *         the order of the given tool codes.
+     * @throws IllegalArgumentException
+     *         If rentalDays < 1.
+     * @throws IllegalArgumentException
+     *         If the discount percentage is not between 0 and 100 (inclusive).
+     * @throws IllegalArgumentException
+     *         If no tool codes are given.
+     * @throws IllegalArgumentException
+     *         If a tool code is unknown or given more than once.
+     */
+    public CartRentalAgreement checkoutCart(List<String> toolCodes, int rentalDays, int discountPercentage,
+                                            LocalDate checkoutDate) throws IllegalArgumentException
+    {
+        final String cartToolCodes = CheckoutPhaseEvent.isRecording() ? String.join(",", toolCodes) : null;
+
+        final CheckoutPhaseEvent validationEvent = CheckoutPhaseEvent.start(CheckoutPhaseEvent.VALIDATION,
+                cartToolCodes, rentalDays);
+        validateRentalDays(rentalDays);
+        validateDiscountPercentage(discountPercentage);
+
+        if (toolCodes.isEmpty())
         {
-            System.out.println("Tool with tool code: " + toolCode + " is not available to rent.");
+            throw new IllegalArgumentException("The cart must contain at least one tool code. Tool codes: " +
+                    toolCodes);
+        }
+        validationEvent.finish(-1);
+
+        final CheckoutPhaseEvent toolLookupEvent = CheckoutPhaseEvent.start(CheckoutPhaseEvent.TOOL_LOOKUP,
+                cartToolCodes, rentalDays);
+        final TreeMap<String, Tool> toolsInClaimOrder = new TreeMap<>();
+
+        for (final String toolCode : toolCodes)
+        {
+            final Tool tool = lookUpTool(toolCode);
+
+            if (toolsInClaimOrder.put(toolCode, tool) != null)
+            {
+                throw new IllegalArgumentException("The tool code is given more than once: " + toolCode);
+            }
+        }
+        toolLookupEvent.finish(-1);
+
+        final Tool[] claimedTools = new Tool[toolsInClaimOrder.size()];
+
+        if (!claimAll(toolsInClaimOrder.values().toArray(new Tool[0]), 0, claimedTools))
+        {
+            System.out.println("Tools with tool codes: " + toolCodes + " are not all available to rent.");
             return null;
         }
 
+        final Map<String, Tool> claimedToolsByToolCode = new HashMap<>();
+
+        for (final Tool claimedTool : claimedTools)
+        {
+            claimedToolsByToolCode.put(claimedTool.getToolCode(), claimedTool);
+        }
+
+        final List<RentalAgreement> rentalAgreements = new ArrayList<>(toolCodes.size());
+
+        for (final String toolCode : toolCodes)
+        {
+            rentalAgreements.add(replicate(null, createRentalAgreement(claimedToolsByToolCode.get(toolCode),
+                    toolCode, rentalDays, discountPercentage, checkoutDate)));
+        }
+
+        return new CartRentalAgreement(rentalAgreements);
+    }
+
+    /**
+     * Locks the given {@link Tool}s from the given index on, in array order, then claims them all if every one of
+     * them is available.
+     * @param tools
+     *         The array of {@link Tool}s, in claim order.
+     * @param index
+     *         The index of the next {@link Tool} to lock.
+     * @param claimedTools
+     *         The array to fill with a snapshot of each claimed {@link Tool}, taken while it is locked.
+     * @return True if every tool was available and is now claimed, false if none were claimed.
+     */
+    private boolean claimAll(final Tool[] tools, final int index, final Tool[] claimedTools)
+    {
+        if (index < tools.length)
+        {
+            synchronized (tools[index])
+            {
+                return claimAll(tools, index + 1, claimedTools);
+            }
+        }
+
+        for (final Tool tool : tools)
+        {
+            if (!tool.isAvailable())
+            {
+                return false;
+            }
+        }
+
+        for (int claimIndex = 0; claimIndex < tools.length; claimIndex++)
+        {
+            tools[claimIndex].setAvailability(false);
+            recordToolState(tools[claimIndex]);
+            claimedTools[claimIndex] = snapshot(tools[claimIndex]);
+        }
+
+        return true;
+    }
+
+    /**
+     * Copies the pricing fields of a {@link Tool}, so that a checkout prices the tool as it was when it was claimed
+     * even if its configuration is reloaded meanwhile. The caller must hold the tool's lock.
+     * @param tool
+     *         The {@link Tool}.
+     * @return The copy of the {@link Tool}.
+     */
+    private static Tool snapshot(final Tool tool)
+    {
+        return new Tool(tool.getToolCode(), tool.getToolType(), tool.getToolBrand(), tool.getDailyCharge(),
+                tool.isWeekdayCharge(), tool.isWeekendCharge(), tool.isHolidayCharge(), tool.isAvailable());
+    }
+
+    /**
+     * Records the current state of a {@link Tool} in the {@link InventoryHistory} and ships it to the
+     * {@link ReplicationLog}, if any. The caller must hold the tool's lock.
+     * @param tool
+     *         The {@link Tool}.
+     */
+    private void recordToolState(final Tool tool)
+    {
+        inventoryHistory.record(tool);
+
+        final ReplicationLog replicationLog = this.replicationLog;
+
+        if (replicationLog != null)
+        {
+            replicationLog.appendTool(tool);
+        }
+    }
+
+    /**
+     * Ships a generated {@link RentalAgreement} to the {@link ReplicationLog}, if any.
+     * @param customerId
+     *         The potentially null {@link String} customer identifier. Null if the tool is not rented by a customer.
+     * @param rentalAgreement
+     *         The {@link RentalAgreement}.
+     * @return The same {@link RentalAgreement}.
+     */
+    private RentalAgreement replicate(final String customerId, final RentalAgreement rentalAgreement)
+    {
+        final ReplicationLog replicationLog = this.replicationLog;
+
+        if (replicationLog != null)
+        {
+            final Set<RentalAgreement> shippedRentalAgreements = rentalAgreementsShippedDuringStart;
+
+            if (customerId != null && shippedRentalAgreements != null)
+            {
+                shippedRentalAgreements.add(rentalAgreement);
+            }
+
+            replicationLog.appendAgreement(customerId, rentalAgreement);
+        }
+
+        return rentalAgreement;
+    }
+
+    /**
+     * Generates the {@link RentalAgreement} for a claimed {@link Tool}.
+     * @param tool
+     *         The snapshot of the claimed {@link Tool}, taken while it was locked.
+     * @param toolCode
+     *         The {@link String} tool identifier.
+     * @param rentalDays
+     *         The number of requested days to rent the tool. Must be greater than or equal to 1.
+     * @param discountPercentage
+     *         The discount percent in this format: %<Discount Percent>. Must be between 0 and 100 (inclusive).
+     * @param checkoutDate
+     *         The {@link LocalDate}.
+     * @return The {@link RentalAgreement}.
+     */
+    private RentalAgreement createRentalAgreement(final Tool tool, final String toolCode, final int rentalDays,
+                                                  final int discountPercentage, final LocalDate checkoutDate)
+    {
         final boolean weekdayCharge = tool.isWeekdayCharge();
         final boolean weekendCharge = tool.isWeekendCharge();
         final boolean holidayCharge = tool.isHolidayCharge();
 
         final LocalDate dueDate = checkoutDate.plusDays(rentalDays);
 
-        final int numberOfDaysToCharge = calculateNumberOfDaysToCharge(checkoutDate, weekdayCharge, weekendCharge,
-                holidayCharge, dueDate);
+        final CheckoutPhaseEvent chargeDayCountingEvent =
+                CheckoutPhaseEvent.start(CheckoutPhaseEvent.CHARGE_DAY_COUNTING, toolCode, rentalDays);
+        final int numberOfDaysToCharge = calculateNumberOfDaysToCharge(toolCode, rentalDays, checkoutDate,
+                weekdayCharge, weekendCharge, holidayCharge, dueDate);
+        chargeDayCountingEvent.finish(numberOfDaysToCharge);
+
+        final CheckoutPhaseEvent pricingEvent = CheckoutPhaseEvent.start(CheckoutPhaseEvent.PRICING, toolCode,
+                rentalDays);
 
         final BigDecimal dailyCharge = tool.getDailyCharge();
 
@@ -91,15 +1036,51 @@ public class RentalStore
 
         final BigDecimal finalCharge = preDiscountCharge.subtract(discountAmount);
 
-        tool.setAvailability(false);
+        pricingEvent.finish(numberOfDaysToCharge);
 
         return new RentalAgreement(toolCode, tool.getToolType(), tool.getToolBrand(), rentalDays,
                 numberOfDaysToCharge, checkoutDate, dueDate, dailyCharge, preDiscountCharge, discountAmount,
                 finalCharge, discountPercentage);
     }
 
+    /**
+     * Validates the number of requested rental days.
+     * @param rentalDays
+     *         The number of requested days to rent the tool.
+     * @throws IllegalArgumentException
+     *         If rentalDays < 1.
+     */
+    private static void validateRentalDays(final int rentalDays) throws IllegalArgumentException
+    {
+        if (rentalDays < 1)
+        {
+            throw new IllegalArgumentException("The rental day count must be greater than or equal to 1. Rental day " +
+                    "count: " + rentalDays);
+        }
+    }
+
+    /**
+     * Validates the discount percentage.
+     * @param discountPercentage
+     *         The discount percent in this format: %<Discount Percent>
+     * @throws IllegalArgumentException
+     *         If the discount percentage is not between 0 and 100 (inclusive).
+     */
+    private static void validateDiscountPercentage(final int discountPercentage) throws IllegalArgumentException
+    {
+        if (discountPercentage > 100 || discountPercentage < 0)
+        {
+            throw new IllegalArgumentException("The discount percentage value must be a number from 0 to 100. " +
+                    "Discount percentage value: " + discountPercentage);
+        }
+    }
+
     /**
      * Calculates the number of days to charge the daily charge value for the tool.
+     * @param toolCode
+     *         The {@link String} tool identifier.
+     * @param rentalDays
+     *         The number of requested days to rent the tool.
      * @param checkoutDate
      *         The {@link LocalDate} check out date. Must be before dueDate.
      * @param weekdayCharge
@@ -112,7 +1093,8 @@ public class RentalStore
      *         The last day that the tool is rented for. Must be after checkoutDate.
      * @return The number of days that are chargeable.
      */
-    private int calculateNumberOfDaysToCharge(final LocalDate checkoutDate, final boolean weekdayCharge,
+    private int calculateNumberOfDaysToCharge(final String toolCode, final int rentalDays,
+                                              final LocalDate checkoutDate, final boolean weekdayCharge,
                                               final boolean weekendCharge, final boolean holidayCharge,
                                               final LocalDate dueDate)
     {
@@ -134,7 +1116,10 @@ public class RentalStore
 
         if (!holidayCharge)
         {
+            final CheckoutPhaseEvent holidayCountingEvent =
+                    CheckoutPhaseEvent.start(CheckoutPhaseEvent.HOLIDAY_COUNTING, toolCode, rentalDays);
             chargeDays -= getNumberOfHolidayInstances(checkoutDate, dueDate);
+            holidayCountingEvent.finish(-1);
         }
 
         return chargeDays;
@@ -148,7 +1133,7 @@ public class RentalStore
      *         The {@link LocalDate} due date. Must be after checkoutDate.
      * @return The potentially empty {@link Set} of {@link LocalDate} holidays of independence day and labor day.
      */
-    private int getNumberOfHolidayInstances(LocalDate checkoutDate, LocalDate dueDate)
+    static int getNumberOfHolidayInstances(LocalDate checkoutDate, LocalDate dueDate)
     {
         assert dueDate.isAfter(checkoutDate) : "dueDate must be after checkOutDate";
 
@@ -0,0 +1,546 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The primary side of warm-standby replication: an append-only change log file of a {@link RentalStore}'s tool
+ * states, rental agreements and tool returns, read by a {@link StandbyReplicator} in another process. Each record is
+ * a length prefix followed by a sequence number, the primary's timestamp, a record type and the record's fields.
+ * Tool records hold the tool's full state, so applying one twice is harmless. Appending a record only serializes it
+ * and hands it to a bounded queue, so no file I/O happens while a checkout holds its locks; a writer thread drains
+ * the queue and writes each batch of records with one gathering write. If the log cannot be written, the failure is
+ * kept and reported by {@link #getFailure()}, and the primary keeps serving checkouts without the log.
+ * @author Eli Charleville
+ */
+public class ReplicationLog implements Closeable
+{
+    /**
+     * The record type holding the full state of a {@link Tool}.
+     */
+    static final byte TOOL = 1;
+
+    /**
+     * The record type holding the tool code of a removed {@link Tool}.
+     */
+    static final byte TOOL_REMOVED = 2;
+
+    /**
+     * The record type holding a {@link RentalAgreement} and the potentially empty customer ID it was made for.
+     */
+    static final byte AGREEMENT = 3;
+
+    /**
+     * The record type holding the customer ID and tool code of a returned tool.
+     */
+    static final byte RETURN = 4;
+
+    /**
+     * The largest valid record length in bytes, excluding the length prefix.
+     */
+    static final int MAXIMUM_RECORD_LENGTH = 1 << 20;
+
+    /**
+     * The number of records that the queue holds when no capacity is given.
+     */
+    private static final int DEFAULT_QUEUE_CAPACITY = 8192;
+
+    /**
+     * The largest number of records written with one gathering write.
+     */
+    private static final int MAXIMUM_BATCH_SIZE = 512;
+
+    /**
+     * The marker queued by {@link #close()} after the last record.
+     */
+    private static final byte[] CLOSE = new byte[0];
+
+    /**
+     * The {@link FileChannel} of the log file.
+     */
+    final private FileChannel channel;
+
+    /**
+     * The reusable {@link ByteArrayOutputStream} that a record is serialized into.
+     */
+    final private ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+
+    /**
+     * The {@link DataOutputStream} over the record bytes.
+     */
+    final private DataOutputStream record = new DataOutputStream(recordBytes);
+
+    /**
+     * The {@link BlockingQueue} of serialized records waiting to be written, oldest first.
+     */
+    final private BlockingQueue<byte[]> pendingRecords;
+
+    /**
+     * The {@link Object} that {@link #flush()} waits on until the writer thread has written enough records.
+     */
+    final private Object writtenLock = new Object();
+
+    /**
+     * The {@link Thread} that writes queued records to the log file.
+     */
+    final private Thread writer;
+
+    /**
+     * The sequence number of the last appended record.
+     */
+    private long sequence;
+
+    /**
+     * The sequence number of the last record written to the log file. Guarded by {@link #writtenLock}.
+     */
+    private long writtenSequence;
+
+    /**
+     * True once {@link #close()} has been called.
+     */
+    private boolean closed;
+
+    /**
+     * The potentially null {@link IOException} that stopped the log. Null if the log is healthy.
+     */
+    private volatile IOException failure;
+
+    /**
+     * Constructor for {@link ReplicationLog} that queues up to 8,192 records. Creates the log file, or appends to it
+     * if it exists, continuing the sequence numbers of its records.
+     * @param file
+     *         The {@link Path} of the log file.
+     * @throws IOException
+     *         If the log file cannot be opened, or holds a record that is not valid.
+     */
+    public ReplicationLog(final Path file) throws IOException
+    {
+        this(file, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Constructor for {@link ReplicationLog}. Creates the log file, or appends to it if it exists, continuing the
+     * sequence numbers of its records.
+     * @param file
+     *         The {@link Path} of the log file.
+     * @param queueCapacity
+     *         The number of records that may wait to be written before appending blocks.
+     * @throws IOException
+     *         If the log file cannot be opened, or holds a record that is not valid.
+     * @throws IllegalArgumentException
+     *         If queueCapacity < 1.
+     */
+    public ReplicationLog(final Path file, final int queueCapacity) throws IOException, IllegalArgumentException
+    {
+        if (queueCapacity < 1)
+        {
+            throw new IllegalArgumentException("The queue capacity must be greater than or equal to 1. Queue " +
+                    "capacity: " + queueCapacity);
+        }
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        try
+        {
+            resumeAfterLastRecord();
+        } catch (IOException exception)
+        {
+            channel.close();
+            throw exception;
+        }
+
+        writtenSequence = sequence;
+        pendingRecords = new ArrayBlockingQueue<>(queueCapacity);
+
+        writer = new Thread(this::write, "replication-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Appends the full state of a {@link Tool}.
+     * @param tool
+     *         The {@link Tool}.
+     */
+    public synchronized void appendTool(final Tool tool)
+    {
+        try
+        {
+            startRecord(TOOL);
+            record.writeUTF(tool.getToolCode());
+            record.writeByte(tool.getToolType().ordinal());
+            record.writeByte(tool.getToolBrand().ordinal());
+            record.writeUTF(tool.getDailyCharge().toPlainString());
+            record.writeBoolean(tool.isWeekdayCharge());
+            record.writeBoolean(tool.isWeekendCharge());
+            record.writeBoolean(tool.isHolidayCharge());
+            record.writeBoolean(tool.isAvailable());
+            finishRecord();
+        } catch (IOException exception)
+        {
+            fail(exception);
+        }
+    }
+
+    /**
+     * Appends the removal of a {@link Tool}.
+     * @param toolCode
+     *         The {@link String} tool code.
+     */
+    public synchronized void appendToolRemoved(final String toolCode)
+    {
+        try
+        {
+            startRecord(TOOL_REMOVED);
+            record.writeUTF(toolCode);
+            finishRecord();
+        } catch (IOException exception)
+        {
+            fail(exception);
+        }
+    }
+
+    /**
+     * Appends a {@link RentalAgreement}.
+     * @param customerId
+     *         The potentially null {@link String} customer ID. Null if the agreement was not made for a customer.
+     * @param rentalAgreement
+     *         The {@link RentalAgreement}.
+     */
+    public synchronized void appendAgreement(final String customerId, final RentalAgreement rentalAgreement)
+    {
+        try
+        {
+            startRecord(AGREEMENT);
+            record.writeUTF(customerId == null ? "" : customerId);
+            record.writeUTF(rentalAgreement.getToolCode());
+            record.writeByte(rentalAgreement.getToolType().ordinal());
+            record.writeByte(rentalAgreement.getToolBrand().ordinal());
+            record.writeInt(rentalAgreement.getRentalDays());
+            record.writeInt(rentalAgreement.getChargeDays());
+            record.writeLong(rentalAgreement.getCheckoutDate().toEpochDay());
+            record.writeLong(rentalAgreement.getDueDate().toEpochDay());
+            record.writeUTF(rentalAgreement.getDailyCharge().toPlainString());
+            record.writeUTF(rentalAgreement.getPreDiscountCharge().toPlainString());
+            record.writeUTF(rentalAgreement.getDiscountAmount().toPlainString());
+            record.writeUTF(rentalAgreement.getFinalCharge().toPlainString());
+            record.writeInt(rentalAgreement.getDiscountPercent());
+            finishRecord();
+        } catch (IOException exception)
+        {
+            fail(exception);
+        }
+    }
+
+    /**
+     * Appends the return of a tool by a customer.
+     * @param customerId
+     *         The {@link String} customer ID.
+     * @param toolCode
+     *         The {@link String} tool code.
+     */
+    public synchronized void appendReturn(final String customerId, final String toolCode)
+    {
+        try
+        {
+            startRecord(RETURN);
+            record.writeUTF(customerId);
+            record.writeUTF(toolCode);
+            finishRecord();
+        } catch (IOException exception)
+        {
+            fail(exception);
+        }
+    }
+
+    /**
+     * @return The potentially null {@link IOException} that stopped the log. Null if the log is healthy.
+     */
+    public IOException getFailure()
+    {
+        return failure;
+    }
+
+    /**
+     * @return The sequence number of the last appended record.
+     */
+    public synchronized long getSequence()
+    {
+        return sequence;
+    }
+
+    /**
+     * @return The sequence number of the last record written to the log file.
+     */
+    public long getWrittenSequence()
+    {
+        synchronized (writtenLock)
+        {
+            return writtenSequence;
+        }
+    }
+
+    /**
+     * Waits until every record appended so far has been written to the log file.
+     * @throws IOException
+     *         If the log has failed.
+     * @throws InterruptedException
+     *         If the calling thread is interrupted while waiting.
+     */
+    public void flush() throws IOException, InterruptedException
+    {
+        final long appendedSequence = getSequence();
+
+        synchronized (writtenLock)
+        {
+            while (writtenSequence < appendedSequence && failure == null)
+            {
+                writtenLock.wait();
+            }
+        }
+
+        if (failure != null)
+        {
+            throw failure;
+        }
+    }
+
+    /**
+     * Writes every record appended so far, stops the writer thread and closes the log file. Appending a record after
+     * closing stops the log with a failure.
+     * @throws IOException
+     *         If the log file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        synchronized (this)
+        {
+            if (closed)
+            {
+                return;
+            }
+
+            closed = true;
+            enqueue(CLOSE);
+        }
+
+        try
+        {
+            writer.join();
+        } catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        channel.close();
+    }
+
+    /**
+     * Reads the records already in the log file so that new records continue their sequence numbers, cuts off a
+     * trailing record that a previous primary did not finish writing, and moves to the end of the file.
+     * @throws IOException
+     *         If the log file cannot be read, or holds a record length that is not valid.
+     */
+    private void resumeAfterLastRecord() throws IOException
+    {
+        final ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + Long.BYTES);
+        final long size = channel.size();
+        long position = 0;
+
+        while (size - position >= header.capacity())
+        {
+            header.clear();
+
+            while (header.hasRemaining())
+            {
+                channel.read(header, position + header.position());
+            }
+
+            final int length = header.getInt(0);
+
+            if (length < Long.BYTES + Long.BYTES + 1 || length > MAXIMUM_RECORD_LENGTH)
+            {
+                throw new IOException("The replication log file has a record length that is not valid. Record " +
+                        "length: " + length + " at position: " + position);
+            }
+
+            if (size - position - Integer.BYTES < length)
+            {
+                break;
+            }
+
+            sequence = header.getLong(Integer.BYTES);
+            position += Integer.BYTES + length;
+        }
+
+        if (position < size)
+        {
+            channel.truncate(position);
+        }
+
+        channel.position(position);
+    }
+
+    /**
+     * Starts serializing a record, leaving room for its length prefix.
+     * @param type
+     *         The record type.
+     * @throws IOException
+     *         If the log has failed.
+     */
+    private void startRecord(final byte type) throws IOException
+    {
+        if (failure != null)
+        {
+            throw failure;
+        }
+
+        if (closed)
+        {
+            throw new IOException("The replication log is closed.");
+        }
+
+        recordBytes.reset();
+        record.writeInt(0);
+        record.writeLong(sequence + 1);
+        record.writeLong(System.currentTimeMillis());
+        record.writeByte(type);
+    }
+
+    /**
+     * Fills in the length prefix of the serialized record and queues it to be written.
+     */
+    private void finishRecord()
+    {
+        final byte[] bytes = recordBytes.toByteArray();
+        ByteBuffer.wrap(bytes).putInt(0, bytes.length - Integer.BYTES);
+
+        enqueue(bytes);
+        sequence++;
+    }
+
+    /**
+     * Queues serialized bytes for the writer thread, waiting while the queue is full. An interrupt of the calling
+     * thread does not stop the wait, since the record would otherwise be lost; the interrupt is restored once the
+     * bytes are queued. The caller must hold this log's lock, so that records are queued in sequence number order.
+     * @param bytes
+     *         The serialized record, or {@link #CLOSE}.
+     */
+    private void enqueue(final byte[] bytes)
+    {
+        boolean interrupted = false;
+
+        while (true)
+        {
+            try
+            {
+                pendingRecords.put(bytes);
+                break;
+            } catch (InterruptedException exception)
+            {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Takes batches of records off the queue and writes each batch to the log file with one gathering write, until
+     * the log is closed. Once the log has failed, records are taken off the queue and dropped.
+     */
+    private void write()
+    {
+        final List<byte[]> batch = new ArrayList<>(MAXIMUM_BATCH_SIZE);
+
+        while (true)
+        {
+            try
+            {
+                batch.add(pendingRecords.take());
+            } catch (InterruptedException exception)
+            {
+                fail(new InterruptedIOException("The replication log writer was interrupted."));
+                return;
+            }
+
+            pendingRecords.drainTo(batch, MAXIMUM_BATCH_SIZE - 1);
+
+            final boolean closing = batch.get(batch.size() - 1) == CLOSE;
+
+            if (closing)
+            {
+                batch.remove(batch.size() - 1);
+            }
+
+            if (failure == null && !batch.isEmpty())
+            {
+                try
+                {
+                    final ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+                    long remaining = 0;
+
+                    for (int index = 0; index < buffers.length; index++)
+                    {
+                        buffers[index] = ByteBuffer.wrap(batch.get(index));
+                        remaining += buffers[index].remaining();
+                    }
+
+                    while (remaining > 0)
+                    {
+                        remaining -= channel.write(buffers);
+                    }
+                } catch (IOException exception)
+                {
+                    fail(exception);
+                }
+            }
+
+            synchronized (writtenLock)
+            {
+                writtenSequence += batch.size();
+                writtenLock.notifyAll();
+            }
+
+            batch.clear();
+
+            if (closing)
+            {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stops the log after a write failure.
+     * @param exception
+     *         The {@link IOException}.
+     */
+    private void fail(final IOException exception)
+    {
+        synchronized (writtenLock)
+        {
+            if (failure == null)
+            {
+                failure = exception;
+                System.out.println("Replication log stopped after a write failure. " + exception.getMessage());
+            }
+
+            writtenLock.notifyAll();
+        }
+    }
+}
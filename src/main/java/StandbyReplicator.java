@@ -0,0 +1,429 @@
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The standby side of warm-standby replication: tails the file of a primary's {@link ReplicationLog} and applies
+ * every complete record to a standby {@link RentalStore} as soon as it appears, keeping the shipped
+ * {@link RentalAgreement}s in a {@link RentalAgreementStore}. The standby can be promoted at any time, which applies
+ * whatever is left in the log and stops tailing it, so promotion takes about one poll interval. How far the standby
+ * is behind is reported in bytes and in milliseconds. A record that cannot be applied stops the standby at that
+ * record; the failure is kept and reported by {@link #getFailure()} while the reported lag keeps growing.
+ * @author Eli Charleville
+ */
+public class StandbyReplicator implements Closeable
+{
+    /**
+     * The number of bytes of a record's length prefix, sequence number and timestamp.
+     */
+    private static final int HEADER_BYTES = Integer.BYTES + Long.BYTES + Long.BYTES;
+
+    /**
+     * The smallest valid record length: a sequence number, a timestamp and a record type.
+     */
+    private static final int MINIMUM_RECORD_LENGTH = Long.BYTES + Long.BYTES + 1;
+
+    /**
+     * The cached {@link ToolType} values, indexed by ordinal.
+     */
+    private static final ToolType[] TOOL_TYPES = ToolType.values();
+
+    /**
+     * The cached {@link ToolBrand} values, indexed by ordinal.
+     */
+    private static final ToolBrand[] TOOL_BRANDS = ToolBrand.values();
+
+    /**
+     * The standby {@link RentalStore} to apply records to.
+     */
+    final private RentalStore standbyStore;
+
+    /**
+     * The {@link RentalAgreementStore} of every shipped {@link RentalAgreement}.
+     */
+    final private RentalAgreementStore rentalAgreementStore = new RentalAgreementStore();
+
+    /**
+     * The {@link FileChannel} of the log file.
+     */
+    final private FileChannel channel;
+
+    /**
+     * The {@link Clock} that the replication lag is measured with.
+     */
+    final private Clock clock;
+
+    /**
+     * The {@link CountDownLatch} that is released when the replicator stops tailing the log.
+     */
+    final private CountDownLatch stopped = new CountDownLatch(1);
+
+    /**
+     * The {@link Thread} that tails the log.
+     */
+    final private Thread thread;
+
+    /**
+     * The reusable {@link ByteBuffer} for a record's header.
+     */
+    final private ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+
+    /**
+     * The file position of the first record that has not been applied.
+     */
+    private long position;
+
+    /**
+     * The sequence number of the last applied record.
+     */
+    private volatile long appliedSequence;
+
+    /**
+     * The potentially null {@link IOException} that stopped the standby. Null if the standby is healthy.
+     */
+    private volatile IOException failure;
+
+    /**
+     * Constructor for {@link StandbyReplicator}. Applies every record already in the log, then starts tailing it.
+     * @param file
+     *         The {@link Path} of the primary's log file. The file must exist.
+     * @param standbyStore
+     *         The standby {@link RentalStore} to apply records to.
+     * @param pollInterval
+     *         The {@link Duration} to wait between looks for new records.
+     * @param clock
+     *         The {@link Clock} that the replication lag is measured with. Should agree with the primary's clock.
+     * @throws IOException
+     *         If the log file cannot be opened or read. A record that cannot be applied is reported by
+     *         {@link #getFailure()} instead.
+     */
+    public StandbyReplicator(final Path file, final RentalStore standbyStore, final Duration pollInterval,
+                             final Clock clock) throws IOException
+    {
+        this.standbyStore = standbyStore;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.clock = clock;
+
+        try
+        {
+            catchUp();
+        } catch (IOException exception)
+        {
+            if (failure == null)
+            {
+                channel.close();
+                throw exception;
+            }
+        }
+
+        final long pollMillis = Math.max(1, pollInterval.toMillis());
+
+        thread = new Thread(() -> tail(pollMillis), "standby-replicator");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return The standby {@link RentalStore}.
+     */
+    public RentalStore getStandbyStore()
+    {
+        return standbyStore;
+    }
+
+    /**
+     * @return The {@link RentalAgreementStore} of every shipped {@link RentalAgreement}.
+     */
+    public RentalAgreementStore getRentalAgreementStore()
+    {
+        return rentalAgreementStore;
+    }
+
+    /**
+     * @return The sequence number of the last applied record.
+     */
+    public long getAppliedSequence()
+    {
+        return appliedSequence;
+    }
+
+    /**
+     * @return The potentially null {@link IOException} that stopped the standby at a record it could not apply. Null
+     *         if the standby is healthy.
+     */
+    public IOException getFailure()
+    {
+        return failure;
+    }
+
+    /**
+     * @return The number of bytes in the log that have not been applied.
+     * @throws IOException
+     *         If the size of the log file cannot be read.
+     */
+    public synchronized long getLagBytes() throws IOException
+    {
+        return channel.size() - position;
+    }
+
+    /**
+     * @return The number of milliseconds since the primary wrote the oldest record that has not been applied, or 0 if
+     *         every record has been applied.
+     * @throws IOException
+     *         If the log file cannot be read.
+     */
+    public synchronized long getLagMillis() throws IOException
+    {
+        if (channel.size() - position < HEADER_BYTES || !readHeader(position))
+        {
+            return 0;
+        }
+
+        return Math.max(0, clock.millis() - header.getLong(Integer.BYTES + Long.BYTES));
+    }
+
+    /**
+     * Applies every complete record that has been written to the log since the last call.
+     * @return The number of applied records.
+     * @throws IOException
+     *         If the log file cannot be read, or the standby has stopped at a record it could not apply.
+     */
+    public synchronized int catchUp() throws IOException
+    {
+        if (failure != null)
+        {
+            throw failure;
+        }
+
+        int appliedRecords = 0;
+
+        while (channel.size() - position >= HEADER_BYTES && readHeader(position))
+        {
+            final int length = header.getInt(0);
+
+            if (length < MINIMUM_RECORD_LENGTH || length > ReplicationLog.MAXIMUM_RECORD_LENGTH)
+            {
+                throw fail(new IOException("The record length is not valid. Record length: " + length));
+            }
+
+            if (channel.size() - position - Integer.BYTES < length)
+            {
+                break;
+            }
+
+            final ByteBuffer body = ByteBuffer.allocate(length - Long.BYTES - Long.BYTES);
+            readFully(body, position + HEADER_BYTES);
+
+            try
+            {
+                apply(new DataInputStream(new ByteArrayInputStream(body.array())));
+            } catch (IOException | RuntimeException exception)
+            {
+                throw fail(exception);
+            }
+
+            appliedSequence = header.getLong(Integer.BYTES);
+            position += Integer.BYTES + length;
+            appliedRecords++;
+        }
+
+        return appliedRecords;
+    }
+
+    /**
+     * Promotes the standby: stops tailing the log, applies every record left in it and closes it. The primary must
+     * have stopped writing to the log first.
+     * @return The standby {@link RentalStore}, now holding the primary's last state.
+     * @throws IOException
+     *         If the log file cannot be read, or the standby has stopped at a record it could not apply.
+     * @throws InterruptedException
+     *         If the calling thread is interrupted while the tailing thread stops.
+     */
+    public RentalStore promote() throws IOException, InterruptedException
+    {
+        stopped.countDown();
+        thread.join();
+
+        try
+        {
+            catchUp();
+        } finally
+        {
+            channel.close();
+        }
+
+        return standbyStore;
+    }
+
+    /**
+     * Stops tailing the log without promoting the standby.
+     * @throws IOException
+     *         If the log file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        stopped.countDown();
+
+        try
+        {
+            thread.join();
+        } catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        channel.close();
+    }
+
+    /**
+     * Waits for the poll interval, then applies new records, until the replicator is stopped.
+     * @param pollMillis
+     *         The number of milliseconds to wait between looks for new records.
+     */
+    private void tail(final long pollMillis)
+    {
+        try
+        {
+            while (!stopped.await(pollMillis, TimeUnit.MILLISECONDS))
+            {
+                try
+                {
+                    catchUp();
+                } catch (IOException exception)
+                {
+                    if (failure != null)
+                    {
+                        return;
+                    }
+
+                    System.out.println("Standby could not read the replication log, retrying. " +
+                            exception.getMessage());
+                }
+            }
+        } catch (InterruptedException exception)
+        {
+            // The replicator was stopped.
+        }
+    }
+
+    /**
+     * Stops the standby at the record at {@link #position}, which could not be applied.
+     * @param cause
+     *         The {@link Exception} that the record caused.
+     * @return The {@link IOException} kept as the failure.
+     */
+    private IOException fail(final Exception cause)
+    {
+        failure = new IOException("The replication record at position: " + position + " could not be applied, " +
+                "the standby stopped at it. " + cause.getMessage(), cause);
+        System.out.println(failure.getMessage());
+        stopped.countDown();
+        return failure;
+    }
+
+    /**
+     * Reads a record's header into {@link #header}.
+     * @param recordPosition
+     *         The file position of the record.
+     * @return True if the header was read, false if the log ends first.
+     * @throws IOException
+     *         If the log file cannot be read.
+     */
+    private boolean readHeader(final long recordPosition) throws IOException
+    {
+        header.clear();
+
+        try
+        {
+            readFully(header, recordPosition);
+        } catch (EOFException exception)
+        {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Fills a {@link ByteBuffer} from the log file.
+     * @param buffer
+     *         The {@link ByteBuffer}.
+     * @param filePosition
+     *         The file position to read from.
+     * @throws IOException
+     *         If the log file cannot be read, or ends before the buffer is full.
+     */
+    private void readFully(final ByteBuffer buffer, final long filePosition) throws IOException
+    {
+        long nextPosition = filePosition;
+
+        while (buffer.hasRemaining())
+        {
+            final int read = channel.read(buffer, nextPosition);
+
+            if (read < 0)
+            {
+                throw new EOFException("The replication log ends in the middle of a record.");
+            }
+
+            nextPosition += read;
+        }
+    }
+
+    /**
+     * Applies one record to the standby {@link RentalStore}.
+     * @param record
+     *         The {@link DataInputStream} of the record's type and fields.
+     * @throws IOException
+     *         If the record is not valid.
+     */
+    private void apply(final DataInputStream record) throws IOException
+    {
+        final byte type = record.readByte();
+
+        switch (type)
+        {
+            case ReplicationLog.TOOL:
+                final Tool tool = new Tool(record.readUTF(), TOOL_TYPES[record.readByte()],
+                        TOOL_BRANDS[record.readByte()], new BigDecimal(record.readUTF()), record.readBoolean(),
+                        record.readBoolean(), record.readBoolean(), record.readBoolean());
+                standbyStore.putTool(tool);
+                standbyStore.setAvailability(tool.getToolCode(), tool.isAvailable());
+                break;
+            case ReplicationLog.TOOL_REMOVED:
+                standbyStore.removeTool(record.readUTF());
+                break;
+            case ReplicationLog.AGREEMENT:
+                final String customerId = record.readUTF();
+                final RentalAgreement rentalAgreement = new RentalAgreement(record.readUTF(),
+                        TOOL_TYPES[record.readByte()], TOOL_BRANDS[record.readByte()], record.readInt(),
+                        record.readInt(), LocalDate.ofEpochDay(record.readLong()),
+                        LocalDate.ofEpochDay(record.readLong()), new BigDecimal(record.readUTF()),
+                        new BigDecimal(record.readUTF()), new BigDecimal(record.readUTF()),
+                        new BigDecimal(record.readUTF()), record.readInt());
+                if (customerId.isEmpty() || standbyStore.applyReplicatedAgreement(customerId, rentalAgreement))
+                {
+                    rentalAgreementStore.append(rentalAgreement);
+                }
+                break;
+            case ReplicationLog.RETURN:
+                standbyStore.applyReplicatedReturn(record.readUTF(), record.readUTF());
+                break;
+            default:
+                throw new IOException("The replication log has an unknown record type: " + type);
+        }
+    }
+}
@@ -0,0 +1,373 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Watches a local directory of tool configuration files and applies changes to a {@link RentalStore} while it keeps
+ * serving checkouts. Each *.csv file in the directory holds one tool per line in this format:
+ * <pre>
+ * toolCode,toolType,toolBrand,dailyCharge,weekdayCharge,weekendCharge,holidayCharge
+ * </pre>
+ * Blank lines, lines starting with # and a header line starting with toolCode are skipped. When a file changes only
+ * the tools that were added, changed or removed in that file are applied. Each tool code is owned by the file that
+ * defined it last, and only its owner can remove it; if the owner drops it while another file still defines it, that
+ * file takes it over. A file that cannot be parsed is rejected as a whole and the last good version of it stays in
+ * effect, and so is a file that held tools but now holds none, since a file being saved in place can briefly read as
+ * empty. A file's tools are only all removed when the file is deleted. Files should be replaced by an atomic move so
+ * that a half written file is never read.
+ * @author Eli Charleville
+ */
+public class StoreConfigurationWatcher implements Closeable
+{
+    /**
+     * The {@link String} file name suffix of configuration files.
+     */
+    private static final String FILE_SUFFIX = ".csv";
+
+    /**
+     * The {@link RentalStore} to apply changes to.
+     */
+    final private RentalStore rentalStore;
+
+    /**
+     * The {@link Path} of the watched directory.
+     */
+    final private Path directory;
+
+    /**
+     * The {@link WatchService} of the watched directory.
+     */
+    final private WatchService watchService;
+
+    /**
+     * The last good {@link Tool} definitions of each file, by {@link String} tool code, by file name {@link Path}.
+     */
+    final private Map<Path, Map<String, Tool>> definitionsByFile = new HashMap<>();
+
+    /**
+     * The file name {@link Path} of the file that owns each {@link String} tool code.
+     */
+    final private Map<String, Path> ownersByToolCode = new HashMap<>();
+
+    /**
+     * The {@link Thread} that waits for changes.
+     */
+    final private Thread thread;
+
+    /**
+     * Constructor for {@link StoreConfigurationWatcher}. Loads every configuration file in the directory, then starts
+     * watching it.
+     * @param rentalStore
+     *         The {@link RentalStore} to apply changes to.
+     * @param directory
+     *         The {@link Path} of the directory to watch.
+     * @throws IOException
+     *         If the directory cannot be watched or listed.
+     */
+    public StoreConfigurationWatcher(final RentalStore rentalStore, final Path directory) throws IOException
+    {
+        this.rentalStore = rentalStore;
+        this.directory = directory;
+        this.watchService = directory.getFileSystem().newWatchService();
+
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+
+        rescan();
+
+        thread = new Thread(this::watch, "store-configuration-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Reloads one configuration file and applies the tools that differ from its last good version. A file that held
+     * tools but now holds none is rejected; its tools are only removed once the file is deleted.
+     * @param fileName
+     *         The {@link Path} file name of the configuration file within the watched directory.
+     * @return True if the file was applied, false if it was rejected.
+     */
+    public synchronized boolean reload(final Path fileName)
+    {
+        final Map<String, Tool> definitions;
+
+        try
+        {
+            definitions = parse(Files.readAllLines(directory.resolve(fileName), StandardCharsets.UTF_8));
+
+            if (definitions.isEmpty() && definitionsByFile.containsKey(fileName))
+            {
+                throw new IllegalArgumentException("The file holds no tools, delete it to remove its tools.");
+            }
+        } catch (NoSuchFileException exception)
+        {
+            apply(fileName, Map.of());
+            return true;
+        } catch (IOException | IllegalArgumentException exception)
+        {
+            System.out.println("Configuration file: " + fileName + " was rejected, the last good version stays in " +
+                    "effect. " + exception.getMessage());
+            return false;
+        }
+
+        apply(fileName, definitions);
+        return true;
+    }
+
+    /**
+     * Stops watching the directory.
+     * @throws IOException
+     *         If the {@link WatchService} cannot be closed.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        watchService.close();
+        thread.interrupt();
+    }
+
+    /**
+     * Waits for changes to configuration files and reloads them until the {@link WatchService} is closed.
+     */
+    private void watch()
+    {
+        try
+        {
+            while (true)
+            {
+                final WatchKey watchKey = watchService.take();
+
+                for (final WatchEvent<?> event : watchKey.pollEvents())
+                {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                    {
+                        rescanAfterOverflow();
+                    } else if (event.context() instanceof Path
+                            && event.context().toString().endsWith(FILE_SUFFIX))
+                    {
+                        reload((Path) event.context());
+                    }
+                }
+
+                if (!watchKey.reset())
+                {
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException exception)
+        {
+            // The watcher was closed.
+        }
+    }
+
+    /**
+     * Reloads every configuration file in the directory and every file that was loaded before but is gone now.
+     * @throws IOException
+     *         If the directory cannot be listed.
+     */
+    private synchronized void rescan() throws IOException
+    {
+        final Set<Path> fileNames = new HashSet<>(definitionsByFile.keySet());
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX))
+        {
+            for (final Path file : files)
+            {
+                fileNames.add(file.getFileName());
+            }
+        }
+
+        for (final Path fileName : fileNames)
+        {
+            reload(fileName);
+        }
+    }
+
+    /**
+     * Rescans the directory after the {@link WatchService} dropped events, so that no change is lost.
+     */
+    private void rescanAfterOverflow()
+    {
+        try
+        {
+            rescan();
+        } catch (IOException exception)
+        {
+            System.out.println("Configuration directory: " + directory + " could not be rescanned after missed " +
+                    "changes. " + exception.getMessage());
+        }
+    }
+
+    /**
+     * Applies the difference between the last good version of a file and its new {@link Tool} definitions.
+     * @param fileName
+     *         The {@link Path} file name of the configuration file.
+     * @param definitions
+     *         The new {@link Map} of {@link Tool} definitions by {@link String} tool code.
+     */
+    private void apply(final Path fileName, final Map<String, Tool> definitions)
+    {
+        final Map<String, Tool> previousDefinitions = definitionsByFile.getOrDefault(fileName, Map.of());
+
+        if (definitions.isEmpty())
+        {
+            definitionsByFile.remove(fileName);
+        } else
+        {
+            definitionsByFile.put(fileName, definitions);
+        }
+
+        for (final Tool definition : definitions.values())
+        {
+            final Path previousOwner = ownersByToolCode.put(definition.getToolCode(), fileName);
+
+            if (!fileName.equals(previousOwner)
+                    || !sameDefinition(definition, previousDefinitions.get(definition.getToolCode())))
+            {
+                rentalStore.putTool(definition);
+            }
+        }
+
+        for (final String toolCode : previousDefinitions.keySet())
+        {
+            if (!definitions.containsKey(toolCode) && fileName.equals(ownersByToolCode.get(toolCode)))
+            {
+                handOver(toolCode);
+            }
+        }
+    }
+
+    /**
+     * Hands a tool code dropped by its owning file over to another file that still defines it, or removes the tool if
+     * no file defines it.
+     * @param toolCode
+     *         The {@link String} tool code.
+     */
+    private void handOver(final String toolCode)
+    {
+        for (final Map.Entry<Path, Map<String, Tool>> fileDefinitions : definitionsByFile.entrySet())
+        {
+            final Tool definition = fileDefinitions.getValue().get(toolCode);
+
+            if (definition != null)
+            {
+                ownersByToolCode.put(toolCode, fileDefinitions.getKey());
+                rentalStore.putTool(definition);
+                return;
+            }
+        }
+
+        ownersByToolCode.remove(toolCode);
+        rentalStore.removeTool(toolCode);
+    }
+
+    /**
+     * Parses the lines of a configuration file.
+     * @param lines
+     *         The {@link List} of {@link String} lines.
+     * @return The {@link Map} of {@link Tool} definitions by {@link String} tool code.
+     * @throws IllegalArgumentException
+     *         If a line is not a valid tool definition, or a tool code is defined more than once.
+     */
+    private static Map<String, Tool> parse(final List<String> lines) throws IllegalArgumentException
+    {
+        final Map<String, Tool> definitions = new LinkedHashMap<>();
+
+        for (int lineNumber = 1; lineNumber <= lines.size(); lineNumber++)
+        {
+            final String line = lines.get(lineNumber - 1).trim();
+
+            if (line.isEmpty() || line.startsWith("#") || line.startsWith("toolCode,"))
+            {
+                continue;
+            }
+
+            final String[] fields = line.split(",", -1);
+
+            if (fields.length != 7)
+            {
+                throw new IllegalArgumentException("Line " + lineNumber + " must have 7 fields: " + line);
+            }
+
+            try
+            {
+                final Tool definition = new Tool(fields[0].trim(), ToolType.valueOf(fields[1].trim()),
+                        ToolBrand.valueOf(fields[2].trim()), new BigDecimal(fields[3].trim()),
+                        parseBoolean(fields[4]), parseBoolean(fields[5]), parseBoolean(fields[6]), true);
+
+                if (definition.getToolCode().isEmpty() || definition.getDailyCharge().signum() < 0)
+                {
+                    throw new IllegalArgumentException("The tool code must not be empty and the daily charge must " +
+                            "not be negative.");
+                }
+
+                if (definitions.put(definition.getToolCode(), definition) != null)
+                {
+                    throw new IllegalArgumentException("The tool code is defined more than once: " +
+                            definition.getToolCode());
+                }
+            } catch (IllegalArgumentException exception)
+            {
+                throw new IllegalArgumentException("Line " + lineNumber + " is not a valid tool: " + line + ". " +
+                        exception.getMessage(), exception);
+            }
+        }
+
+        return definitions;
+    }
+
+    /**
+     * Parses a boolean field that must be exactly true or false.
+     * @param field
+     *         The {@link String} field.
+     * @return The boolean value.
+     * @throws IllegalArgumentException
+     *         If the field is not true or false.
+     */
+    private static boolean parseBoolean(final String field) throws IllegalArgumentException
+    {
+        switch (field.trim())
+        {
+            case "true":
+                return true;
+            case "false":
+                return false;
+            default:
+                throw new IllegalArgumentException("Expected true or false but was: " + field);
+        }
+    }
+
+    /**
+     * @param definition
+     *         The new {@link Tool} definition.
+     * @param previous
+     *         The potentially null previous {@link Tool} definition.
+     * @return True if both definitions have the same values, false otherwise.
+     */
+    private static boolean sameDefinition(final Tool definition, final Tool previous)
+    {
+        return previous != null
+                && definition.getToolType() == previous.getToolType()
+                && definition.getToolBrand() == previous.getToolBrand()
+                && definition.getDailyCharge().compareTo(previous.getDailyCharge()) == 0
+                && definition.isWeekdayCharge() == previous.isWeekdayCharge()
+                && definition.isWeekendCharge() == previous.isWeekendCharge()
+                && definition.isHolidayCharge() == previous.isHolidayCharge();
+    }
+}
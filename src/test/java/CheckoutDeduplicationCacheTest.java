@@ -0,0 +1,131 @@
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link CheckoutDeduplicationCache} class.
+ * @author Eli Charleville
+ */
+class CheckoutDeduplicationCacheTest
+{
+    /**
+     * The {@link RentalAgreement} returned by the checkouts in these tests.
+     */
+    private static final RentalAgreement RENTAL_AGREEMENT = new RentalAgreement("JAKR", ToolType.JACKHAMMER,
+            ToolBrand.RIDGID, 1, 1, LocalDate.of(2020, 7, 6), LocalDate.of(2020, 7, 7), BigDecimal.valueOf(2.99),
+            BigDecimal.valueOf(2.99), BigDecimal.ZERO, BigDecimal.valueOf(2.99), 0);
+
+    /**
+     * Tests that the cache never remembers more than its maximum size.
+     */
+    @Test
+    public void test_BoundedByMaximumSize()
+    {
+        final CheckoutDeduplicationCache cache = new CheckoutDeduplicationCache(2, Duration.ofMinutes(10));
+        final AtomicInteger checkouts = new AtomicInteger();
+
+        for (int request = 0; request < 5; request++)
+        {
+            cache.getOrCheckout("request-" + request, () ->
+            {
+                checkouts.incrementAndGet();
+                return RENTAL_AGREEMENT;
+            });
+        }
+
+        assertEquals(2, cache.size());
+        assertEquals(5, checkouts.get());
+
+        cache.getOrCheckout("request-4", () ->
+        {
+            checkouts.incrementAndGet();
+            return RENTAL_AGREEMENT;
+        });
+
+        assertEquals(5, checkouts.get());
+    }
+
+    /**
+     * Tests that an idempotency key is forgotten once it expires, and that a null checkout is not remembered.
+     */
+    @Test
+    public void test_ExpiredAndNullNotRemembered() throws InterruptedException
+    {
+        final CheckoutDeduplicationCache cache = new CheckoutDeduplicationCache(10, Duration.ofMillis(1));
+        final AtomicInteger checkouts = new AtomicInteger();
+
+        cache.getOrCheckout("request-1", () ->
+        {
+            checkouts.incrementAndGet();
+            return RENTAL_AGREEMENT;
+        });
+
+        Thread.sleep(5);
+
+        cache.getOrCheckout("request-1", () ->
+        {
+            checkouts.incrementAndGet();
+            return null;
+        });
+
+        assertEquals(2, checkouts.get());
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Tests that checkouts that return null, such as retries against an unavailable tool, do not pile up in the
+     * eviction queue beyond the maximum size.
+     */
+    @Test
+    public void test_NullCheckoutsStayBounded()
+    {
+        final CheckoutDeduplicationCache cache = new CheckoutDeduplicationCache(10, Duration.ofMinutes(10));
+
+        for (int request = 0; request < 10_000; request++)
+        {
+            cache.getOrCheckout("request-" + request, () -> null);
+        }
+
+        assertEquals(0, cache.size());
+        assertTrue(cache.queuedSize() <= 10);
+    }
+
+    /**
+     * Tests that a remembered checkout survives as many failing retries of another key as the maximum size.
+     */
+    @Test
+    public void test_SuccessSurvivesFailingRetries()
+    {
+        final CheckoutDeduplicationCache cache = new CheckoutDeduplicationCache(10, Duration.ofMinutes(10));
+        final AtomicInteger checkouts = new AtomicInteger();
+
+        cache.getOrCheckout("request-1", () ->
+        {
+            checkouts.incrementAndGet();
+            return RENTAL_AGREEMENT;
+        });
+
+        for (int retry = 0; retry < 10; retry++)
+        {
+            cache.getOrCheckout("request-2", () -> null);
+            assertThrows(IllegalStateException.class, () -> cache.getOrCheckout("request-3", () ->
+            {
+                throw new IllegalStateException();
+            }));
+        }
+
+        assertSame(RENTAL_AGREEMENT, cache.getOrCheckout("request-1", () ->
+        {
+            checkouts.incrementAndGet();
+            return null;
+        }));
+        assertEquals(1, checkouts.get());
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.queuedSize());
+    }
+}
@@ -0,0 +1,109 @@
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link CheckoutPhaseEvent} class.
+ * @author Eli Charleville
+ */
+class CheckoutPhaseEventTest
+{
+    /**
+     * Tests that a recording with the event enabled gets an event for every phase of a checkout, carrying the tool
+     * code, rental days and charge days.
+     */
+    @Test
+    public void test_RecordsEveryPhase(@TempDir Path directory) throws Exception
+    {
+        final Tool toolJAKR = new Tool("JAKR", ToolType.JACKHAMMER, ToolBrand.RIDGID, BigDecimal.valueOf(2.99), true,
+                false, false, true);
+
+        final RentalStore rentalStore = new RentalStore(Map.of("JAKR", toolJAKR));
+
+        final Path file = directory.resolve("checkout.jfr");
+
+        try (Recording recording = new Recording())
+        {
+            recording.enable(CheckoutPhaseEvent.class);
+            recording.start();
+            rentalStore.checkout("JAKR", 9, 0, LocalDate.of(2015, 7, 2));
+            recording.stop();
+            recording.dump(file);
+        }
+
+        final List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals("rentalstore.CheckoutPhase"))
+                .collect(Collectors.toList());
+
+        assertEquals(Set.of(CheckoutPhaseEvent.VALIDATION, CheckoutPhaseEvent.TOOL_LOOKUP,
+                        CheckoutPhaseEvent.CHARGE_DAY_COUNTING, CheckoutPhaseEvent.HOLIDAY_COUNTING,
+                        CheckoutPhaseEvent.PRICING),
+                events.stream().map(event -> event.getString("phase")).collect(Collectors.toSet()));
+
+        for (final RecordedEvent event : events)
+        {
+            assertEquals("JAKR", event.getString("toolCode"));
+            assertEquals(9, event.getInt("rentalDays"));
+            if (event.getString("phase").equals(CheckoutPhaseEvent.PRICING))
+            {
+                assertEquals(5, event.getInt("chargeDays"));
+            }
+        }
+    }
+
+    /**
+     * Tests that policy-priced, customer and cart checkouts also report their validation and tool lookup phases, and
+     * that the event reports whether it is enabled, so that the cart's joined tool codes are only built when it is.
+     */
+    @Test
+    public void test_EveryCheckoutPathRecordsValidationAndLookup(@TempDir Path directory) throws Exception
+    {
+        final RentalStore rentalStore = new RentalStore(Map.of(
+                "JAKR", new Tool("JAKR", ToolType.JACKHAMMER, ToolBrand.RIDGID, BigDecimal.valueOf(2.99), true,
+                        false, false, true),
+                "LADW", new Tool("LADW", ToolType.LADDER, ToolBrand.WERNER, BigDecimal.valueOf(1.99), true, true,
+                        false, true),
+                "CHNS", new Tool("CHNS", ToolType.CHAINSAW, ToolBrand.STIHL, BigDecimal.valueOf(1.49), true, false,
+                        true, true),
+                "JAKD", new Tool("JAKD", ToolType.JACKHAMMER, ToolBrand.DEWALT, BigDecimal.valueOf(2.99), true,
+                        false, false, true)));
+
+        final Path file = directory.resolve("checkout.jfr");
+
+        try (Recording recording = new Recording())
+        {
+            assertFalse(CheckoutPhaseEvent.isRecording());
+            recording.enable(CheckoutPhaseEvent.class);
+            recording.start();
+            assertTrue(CheckoutPhaseEvent.isRecording());
+            rentalStore.checkout("JAKR", 4, LocalDate.of(2015, 7, 2));
+            rentalStore.checkoutForCustomer("c1", "LADW", 4, 0, LocalDate.of(2015, 7, 2));
+            rentalStore.checkoutCart(List.of("CHNS", "JAKD"), 4, 0, LocalDate.of(2015, 7, 2));
+            recording.stop();
+            recording.dump(file);
+        }
+
+        final List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals("rentalstore.CheckoutPhase"))
+                .collect(Collectors.toList());
+
+        for (final String phase : List.of(CheckoutPhaseEvent.VALIDATION, CheckoutPhaseEvent.TOOL_LOOKUP))
+        {
+            assertEquals(Set.of("JAKR", "LADW", "CHNS,JAKD"), events.stream()
+                    .filter(event -> event.getString("phase").equals(phase))
+                    .map(event -> event.getString("toolCode")).collect(Collectors.toSet()));
+        }
+    }
+}
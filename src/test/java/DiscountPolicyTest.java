@@ -0,0 +1,83 @@
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link DiscountPolicy} class.
+ * @author Eli Charleville
+ */
+class DiscountPolicyTest
+{
+    /**
+     * Tests that the largest discount of the rules matching the tool type, tool brand, rental length and checkout
+     * date is resolved.
+     */
+    @Test
+    public void test_ResolvesBestMatchingDiscount()
+    {
+        final DiscountPolicy discountPolicy = DiscountPolicy.compile(List.of(
+                new DiscountRule(ToolType.CHAINSAW, null, 1, LocalDate.of(2021, 9, 1), LocalDate.of(2021, 11, 30), 20),
+                new DiscountRule(null, ToolBrand.DEWALT, 1, null, null, 10),
+                new DiscountRule(null, null, 7, null, null, 15),
+                new DiscountRule(null, null, 30, null, null, 25)));
+
+        final LocalDate summer = LocalDate.of(2021, 7, 1);
+        final LocalDate autumn = LocalDate.of(2021, 10, 1);
+
+        assertEquals(0, discountPolicy.resolveDiscountPercentage(ToolType.LADDER, ToolBrand.WERNER, 6, summer));
+        assertEquals(15, discountPolicy.resolveDiscountPercentage(ToolType.LADDER, ToolBrand.WERNER, 7, summer));
+        assertEquals(15, discountPolicy.resolveDiscountPercentage(ToolType.LADDER, ToolBrand.WERNER, 29, summer));
+        assertEquals(25, discountPolicy.resolveDiscountPercentage(ToolType.LADDER, ToolBrand.WERNER, 365, summer));
+        assertEquals(10, discountPolicy.resolveDiscountPercentage(ToolType.JACKHAMMER, ToolBrand.DEWALT, 3, summer));
+        assertEquals(0, discountPolicy.resolveDiscountPercentage(ToolType.CHAINSAW, ToolBrand.STIHL, 3, summer));
+        assertEquals(20, discountPolicy.resolveDiscountPercentage(ToolType.CHAINSAW, ToolBrand.STIHL, 3, autumn));
+        assertEquals(25, discountPolicy.resolveDiscountPercentage(ToolType.CHAINSAW, ToolBrand.STIHL, 30, autumn));
+    }
+
+    /**
+     * Tests that rules with minimum rental lengths beyond the bucket lookup table compile without sizing the table
+     * by them and still resolve by rental length.
+     */
+    @Test
+    public void test_HugeMinimumRentalDays()
+    {
+        final DiscountPolicy discountPolicy = DiscountPolicy.compile(List.of(
+                new DiscountRule(null, null, 1000, null, null, 30),
+                new DiscountRule(null, null, Integer.MAX_VALUE, null, null, 50)));
+
+        final LocalDate summer = LocalDate.of(2021, 7, 1);
+
+        assertEquals(0, discountPolicy.resolveDiscountPercentage(ToolType.LADDER, ToolBrand.WERNER, 999, summer));
+        assertEquals(30, discountPolicy.resolveDiscountPercentage(ToolType.LADDER, ToolBrand.WERNER, 1000, summer));
+        assertEquals(30, discountPolicy.resolveDiscountPercentage(ToolType.LADDER, ToolBrand.WERNER,
+                Integer.MAX_VALUE - 1, summer));
+        assertEquals(50, discountPolicy.resolveDiscountPercentage(ToolType.LADDER, ToolBrand.WERNER,
+                Integer.MAX_VALUE, summer));
+    }
+
+    /**
+     * Tests that the empty policy grants no discount.
+     */
+    @Test
+    public void test_NoneGrantsNoDiscount()
+    {
+        assertEquals(0, DiscountPolicy.NONE.resolveDiscountPercentage(ToolType.JACKHAMMER, ToolBrand.RIDGID, 1,
+                LocalDate.of(2021, 7, 2)));
+    }
+
+    /**
+     * Tests that a {@link DiscountRule} with a discount percentage above 100 is rejected.
+     */
+    @Test
+    public void test_RuleDiscountPercentageOver100()
+    {
+        final Exception exception = assertThrows(IllegalArgumentException.class, () ->
+                new DiscountRule(null, null, 1, null, null, 101));
+
+        assertEquals("The discount percentage value must be a number from 0 to 100. " +
+                "Discount percentage value: 101", exception.getMessage());
+    }
+}
@@ -0,0 +1,109 @@
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link FleetQuoter} class.
+ * @author Eli Charleville
+ */
+class FleetQuoterTest
+{
+    /**
+     * Tests that a fleet quote prices every tool the same as {@link RentalStore#checkout(String, int, int, LocalDate)}
+     * for rentals that start on each day of the week and span holidays.
+     */
+    @Test
+    public void test_QuoteMatchesCheckout()
+    {
+        final List<Integer> rentalDayCounts = List.of(1, 3, 4, 6, 9, 13, 70, 730);
+
+        for (int startDay = 0; startDay < 7; startDay++)
+        {
+            for (final int rentalDays : rentalDayCounts)
+            {
+                final LocalDate checkoutDate = LocalDate.of(2020, 6, 28).plusDays(startDay);
+
+                final Map<String, Tool> toolsByToolCode = Map.of(
+                        "CHNS", new Tool("CHNS", ToolType.CHAINSAW, ToolBrand.STIHL, BigDecimal.valueOf(1.49), true,
+                                false, true, true),
+                        "LADW", new Tool("LADW", ToolType.LADDER, ToolBrand.WERNER, BigDecimal.valueOf(1.99), true,
+                                true, false, true),
+                        "JAKD", new Tool("JAKD", ToolType.JACKHAMMER, ToolBrand.DEWALT, BigDecimal.valueOf(2.99), true,
+                                false, false, true));
+
+                final RentalStore rentalStore = new RentalStore(toolsByToolCode);
+
+                final FleetQuoter.Quote quote = rentalStore.createFleetQuoter().quote(rentalDays, checkoutDate);
+
+                for (int index = 0; index < quote.size(); index++)
+                {
+                    final RentalAgreement rentalAgreement = rentalStore.checkout(quote.getToolCode(index), rentalDays,
+                            0, checkoutDate);
+
+                    assertEquals(rentalAgreement.getChargeDays(), quote.getChargeDays(index));
+                    assertTrue(rentalAgreement.getPreDiscountCharge().compareTo(quote.getPreDiscountCharge(index))
+                            == 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests that quoted tools are grouped by {@link ToolType} so that a tool type can be read as an index range.
+     */
+    @Test
+    public void test_QuoteGroupedByToolType()
+    {
+        final FleetQuoter fleetQuoter = new FleetQuoter(List.of(
+                new Tool("JAKR", ToolType.JACKHAMMER, ToolBrand.RIDGID, BigDecimal.valueOf(2.99), true, false, false,
+                        true),
+                new Tool("LADW", ToolType.LADDER, ToolBrand.WERNER, BigDecimal.valueOf(1.99), true, true, false, true),
+                new Tool("JAKD", ToolType.JACKHAMMER, ToolBrand.DEWALT, BigDecimal.valueOf(2.99), true, false, false,
+                        true)));
+
+        final FleetQuoter.Quote quote = fleetQuoter.quote(5, LocalDate.of(2015, 7, 2));
+
+        assertEquals(0, quote.fromIndex(ToolType.CHAINSAW));
+        assertEquals(0, quote.toIndex(ToolType.CHAINSAW));
+        assertEquals("LADW", quote.getToolCode(quote.fromIndex(ToolType.LADDER)));
+        assertEquals(1, quote.toIndex(ToolType.LADDER));
+        assertEquals("JAKD", quote.getToolCode(quote.fromIndex(ToolType.JACKHAMMER)));
+        assertEquals("JAKR", quote.getToolCode(quote.fromIndex(ToolType.JACKHAMMER) + 1));
+        assertEquals(3, quote.toIndex(ToolType.JACKHAMMER));
+        assertEquals(ToolType.JACKHAMMER, quote.getToolType(2));
+    }
+
+    /**
+     * Tests that tools with daily charges in fractions of a cent, including one too precise for the primitive
+     * arrays, are quoted the same as a checkout prices them instead of failing the whole quote.
+     */
+    @Test
+    public void test_QuoteSubCentDailyCharges()
+    {
+        final Map<String, Tool> toolsByToolCode = Map.of(
+                "JAKR", new Tool("JAKR", ToolType.JACKHAMMER, ToolBrand.RIDGID, new BigDecimal("1.995"), true, false,
+                        false, true),
+                "LADW", new Tool("LADW", ToolType.LADDER, ToolBrand.WERNER, new BigDecimal("1.23456789"), true,
+                        true, false, true));
+
+        final RentalStore rentalStore = new RentalStore(toolsByToolCode);
+
+        final FleetQuoter.Quote quote = rentalStore.createFleetQuoter().quote(5, LocalDate.of(2020, 7, 2));
+
+        assertEquals(2, quote.size());
+
+        for (int index = 0; index < quote.size(); index++)
+        {
+            final RentalAgreement rentalAgreement = rentalStore.checkout(quote.getToolCode(index), 5, 0,
+                    LocalDate.of(2020, 7, 2));
+
+            assertEquals(rentalAgreement.getChargeDays(), quote.getChargeDays(index));
+            assertTrue(rentalAgreement.getPreDiscountCharge().compareTo(quote.getPreDiscountCharge(index)) == 0);
+        }
+    }
+}
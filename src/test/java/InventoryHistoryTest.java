@@ -0,0 +1,107 @@
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link InventoryHistory} class.
+ * @author Eli Charleville
+ */
+class InventoryHistoryTest
+{
+    /**
+     * Tests that point-in-time reads see the availability and daily charge in effect at that time, and that versions
+     * older than the retention window are garbage collected.
+     */
+    @Test
+    public void test_PointInTimeReadsAndGarbageCollection()
+    {
+        final Instant start = Instant.parse("2020-07-01T12:00:00Z");
+        final SettableClock clock = new SettableClock(start);
+
+        final Tool toolJAKR = new Tool("JAKR", ToolType.JACKHAMMER, ToolBrand.RIDGID, BigDecimal.valueOf(2.99), true,
+                false, false, true);
+        final Tool toolLADW = new Tool("LADW", ToolType.LADDER, ToolBrand.WERNER, BigDecimal.valueOf(1.99), true,
+                true, false, true);
+
+        final RentalStore rentalStore = new RentalStore(Map.of("JAKR", toolJAKR, "LADW", toolLADW),
+                new CheckoutDeduplicationCache(10, Duration.ofMinutes(10)),
+                new InventoryHistory(Duration.ofDays(30), clock));
+        final InventoryHistory inventoryHistory = rentalStore.getInventoryHistory();
+
+        clock.instant = start.plus(Duration.ofDays(1));
+        rentalStore.checkout("JAKR", 4, 0, LocalDate.of(2020, 7, 2));
+
+        clock.instant = start.plus(Duration.ofDays(2));
+        rentalStore.setDailyCharge("LADW", BigDecimal.valueOf(2.49));
+
+        clock.instant = start.plus(Duration.ofDays(5));
+        rentalStore.setAvailability("JAKR", true);
+
+        assertEquals(List.of(), inventoryHistory.toolCodesOutAt(start));
+        assertEquals(List.of("JAKR"), inventoryHistory.toolCodesOutAt(start.plus(Duration.ofDays(3))));
+        assertEquals(List.of(), inventoryHistory.toolCodesOutAt(start.plus(Duration.ofDays(6))));
+        assertTrue(inventoryHistory.versionAt("LADW", start.plus(Duration.ofDays(1))).getDailyCharge()
+                .compareTo(BigDecimal.valueOf(1.99)) == 0);
+        assertTrue(inventoryHistory.versionAt("LADW", start.plus(Duration.ofDays(3))).getDailyCharge()
+                .compareTo(BigDecimal.valueOf(2.49)) == 0);
+        assertNull(inventoryHistory.versionAt("LADW", start.minus(Duration.ofDays(1))));
+
+        clock.instant = start.plus(Duration.ofDays(33));
+        inventoryHistory.collectGarbage();
+
+        assertNull(inventoryHistory.versionAt("JAKR", start));
+        assertFalse(inventoryHistory.versionAt("JAKR", start.plus(Duration.ofDays(4))).isAvailable());
+        assertTrue(inventoryHistory.versionAt("JAKR", start.plus(Duration.ofDays(6))).isAvailable());
+        assertNull(inventoryHistory.versionAt("LADW", start.plus(Duration.ofDays(1))));
+        assertNotNull(inventoryHistory.versionAt("LADW", start.plus(Duration.ofDays(2))));
+    }
+
+    /**
+     * A {@link Clock} whose {@link Instant} is set by the test.
+     */
+    private static class SettableClock extends Clock
+    {
+        /**
+         * The current {@link Instant}.
+         */
+        private Instant instant;
+
+        /**
+         * Constructor for {@link SettableClock}.
+         * @param instant
+         *         The current {@link Instant}.
+         */
+        private SettableClock(final Instant instant)
+        {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneId getZone()
+        {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone)
+        {
+            return this;
+        }
+
+        @Override
+        public Instant instant()
+        {
+            return instant;
+        }
+    }
+}
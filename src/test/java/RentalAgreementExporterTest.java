@@ -0,0 +1,119 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link RentalAgreementExporter} class.
+ * @author Eli Charleville
+ */
+class RentalAgreementExporterTest
+{
+    /**
+     * The {@link RentalAgreement} exported by these tests.
+     */
+    private static final RentalAgreement RENTAL_AGREEMENT = new RentalAgreement("LADW", ToolType.LADDER,
+            ToolBrand.WERNER, 3, 2, LocalDate.of(2020, 7, 2), LocalDate.of(2020, 7, 5), new BigDecimal("1.99"),
+            new BigDecimal("3.98"), new BigDecimal("0.40"), new BigDecimal("3.58"), 10);
+
+    /**
+     * Tests that agreements are exported as CSV rows with a header row, in the order of the getters.
+     */
+    @Test
+    public void test_Csv(@TempDir Path directory) throws IOException
+    {
+        try (RentalAgreementExporter exporter = new RentalAgreementExporter(directory, "agreements",
+                RentalAgreementExporter.Format.CSV, false, Long.MAX_VALUE))
+        {
+            exporter.export(RENTAL_AGREEMENT);
+            exporter.export(RENTAL_AGREEMENT);
+        }
+
+        final List<String> lines = Files.readAllLines(directory.resolve("agreements-0001.csv"));
+
+        assertEquals(List.of("toolCode,toolType,toolBrand,rentalDays,chargeDays,checkoutDate,dueDate,dailyCharge," +
+                        "preDiscountCharge,discountAmount,finalCharge,discountPercent",
+                "LADW,LADDER,WERNER,3,2,2020-07-02,2020-07-05,1.99,3.98,0.40,3.58,10",
+                "LADW,LADDER,WERNER,3,2,2020-07-02,2020-07-05,1.99,3.98,0.40,3.58,10"), lines);
+    }
+
+    /**
+     * Tests that gzip compressed JSON Lines files are rotated by size and together hold every exported agreement.
+     */
+    @Test
+    public void test_GzipJsonRotation(@TempDir Path directory) throws IOException
+    {
+        final RentalAgreementExporter exporter = new RentalAgreementExporter(directory, "agreements",
+                RentalAgreementExporter.Format.JSON, true, 1024);
+
+        for (int count = 0; count < 20_000; count++)
+        {
+            exporter.export(RENTAL_AGREEMENT);
+        }
+        exporter.close();
+
+        assertTrue(exporter.getFiles().size() > 1);
+
+        final List<String> lines = new ArrayList<>();
+        for (final Path file : exporter.getFiles())
+        {
+            assertTrue(file.getFileName().toString().endsWith(".jsonl.gz"));
+
+            try (InputStream inputStream = new GZIPInputStream(Files.newInputStream(file)))
+            {
+                final String content = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+                lines.addAll(List.of(content.split("\n")));
+            }
+        }
+
+        assertEquals(20_000, lines.size());
+        assertEquals("{\"toolCode\":\"LADW\",\"toolType\":\"LADDER\",\"toolBrand\":\"WERNER\",\"rentalDays\":3," +
+                "\"chargeDays\":2,\"checkoutDate\":\"2020-07-02\",\"dueDate\":\"2020-07-05\",\"dailyCharge\":1.99," +
+                "\"preDiscountCharge\":3.98,\"discountAmount\":0.40,\"finalCharge\":3.58,\"discountPercent\":10}",
+                lines.get(19_999));
+    }
+
+    /**
+     * Tests that exporting a day without agreements still writes a file: a CSV file with only its header row, and a
+     * gzip file holding an empty member.
+     */
+    @Test
+    public void test_EmptyDay(@TempDir Path directory) throws IOException
+    {
+        final RentalAgreementStore rentalAgreementStore = new RentalAgreementStore();
+        rentalAgreementStore.append(RENTAL_AGREEMENT);
+
+        try (RentalAgreementExporter exporter = new RentalAgreementExporter(directory, "agreements",
+                RentalAgreementExporter.Format.CSV, false, Long.MAX_VALUE))
+        {
+            assertEquals(0, exporter.export(rentalAgreementStore, LocalDate.of(2020, 7, 3)));
+        }
+
+        assertEquals(List.of("toolCode,toolType,toolBrand,rentalDays,chargeDays,checkoutDate,dueDate,dailyCharge," +
+                "preDiscountCharge,discountAmount,finalCharge,discountPercent"),
+                Files.readAllLines(directory.resolve("agreements-0001.csv")));
+
+        final RentalAgreementExporter exporter = new RentalAgreementExporter(directory, "empty",
+                RentalAgreementExporter.Format.JSON, true, Long.MAX_VALUE);
+        assertEquals(0, exporter.export(rentalAgreementStore, LocalDate.of(2020, 7, 3)));
+        exporter.close();
+
+        assertEquals(List.of(directory.resolve("empty-0001.jsonl.gz")), exporter.getFiles());
+
+        try (InputStream inputStream = new GZIPInputStream(Files.newInputStream(exporter.getFiles().get(0))))
+        {
+            assertEquals(0, inputStream.readAllBytes().length);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link RentalAgreementStore} class.
+ * @author Eli Charleville
+ */
+class RentalAgreementStoreTest
+{
+    /**
+     * Tests that an appended {@link RentalAgreement} is read back with the same values.
+     */
+    @Test
+    public void test_AppendAndGet()
+    {
+        final Tool toolLADW = new Tool("LADW", ToolType.LADDER, ToolBrand.WERNER, BigDecimal.valueOf(1.99), true,
+                true, false, true);
+
+        final RentalStore rentalStore = new RentalStore(Map.of("LADW", toolLADW));
+
+        final RentalAgreement rentalAgreement = rentalStore.checkout("LADW", 3, 10, LocalDate.of(2020, 7, 2));
+
+        final RentalAgreementStore rentalAgreementStore = new RentalAgreementStore();
+
+        final RentalAgreement stored = rentalAgreementStore.get(rentalAgreementStore.append(rentalAgreement));
+
+        assertEquals(rentalAgreement.toString(), stored.toString());
+        assertEquals(ToolType.LADDER, stored.getToolType());
+        assertEquals(ToolBrand.WERNER, stored.getToolBrand());
+        assertEquals(LocalDate.of(2020, 7, 5), stored.getDueDate());
+        assertTrue(stored.getFinalCharge().compareTo(BigDecimal.valueOf(3.58)) == 0);
+    }
+
+    /**
+     * Tests that the store grows past its initial capacity and that a date range scan only visits agreements
+     * checked out within the range.
+     */
+    @Test
+    public void test_CheckedOutBetween()
+    {
+        final RentalAgreementStore rentalAgreementStore = new RentalAgreementStore(1);
+
+        final LocalDate start = LocalDate.of(2021, 1, 1);
+
+        for (int day = 0; day < 100; day++)
+        {
+            final LocalDate checkoutDate = start.plusDays(day);
+
+            rentalAgreementStore.append(new RentalAgreement(day % 2 == 0 ? "JAKR" : "CHNS", ToolType.JACKHAMMER,
+                    ToolBrand.RIDGID, 1, 1, checkoutDate, checkoutDate.plusDays(1), BigDecimal.valueOf(2.99),
+                    BigDecimal.valueOf(2.99), BigDecimal.ZERO, BigDecimal.valueOf(2.99), 0));
+        }
+
+        final List<RentalAgreement> matches = new ArrayList<>();
+
+        final int count = rentalAgreementStore.forEachCheckedOutBetween(start.plusDays(10), start.plusDays(19),
+                matches::add);
+
+        assertEquals(100, rentalAgreementStore.size());
+        assertEquals(10, count);
+        assertEquals(start.plusDays(10), matches.get(0).getCheckoutDate());
+        assertEquals("JAKR", matches.get(0).getToolCode());
+        assertEquals("CHNS", matches.get(1).getToolCode());
+        assertTrue(rentalAgreementStore.sumFinalChargeCheckedOutBetween(start.plusDays(10), start.plusDays(19))
+                .compareTo(BigDecimal.valueOf(29.90)) == 0);
+    }
+
+    /**
+     * Tests that an agreement for a tool with a daily charge in fractions of a cent is stored with its exact daily
+     * charge.
+     */
+    @Test
+    public void test_AppendSubCentDailyCharge()
+    {
+        final Tool toolJAKR = new Tool("JAKR", ToolType.JACKHAMMER, ToolBrand.RIDGID, new BigDecimal("1.995"), true,
+                false, false, true);
+
+        final RentalStore rentalStore = new RentalStore(Map.of("JAKR", toolJAKR));
+
+        final RentalAgreement rentalAgreement = rentalStore.checkout("JAKR", 4, 0, LocalDate.of(2020, 7, 2));
+
+        final RentalAgreementStore rentalAgreementStore = new RentalAgreementStore();
+
+        final RentalAgreement stored = rentalAgreementStore.get(rentalAgreementStore.append(rentalAgreement));
+
+        assertEquals(new BigDecimal("1.995"), stored.getDailyCharge());
+        assertTrue(stored.getFinalCharge().compareTo(rentalAgreement.getFinalCharge()) == 0);
+    }
+}
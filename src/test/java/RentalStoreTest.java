@@ -2,7 +2,17 @@ import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -222,4 +232,248 @@ class RentalStoreTest
         assertEquals(LocalDate.of(2019, 12, 31), rentalAgreement.getDueDate());
         assertFalse(toolLADW.isAvailable());
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that when {@link RentalStore#checkout(String, int, LocalDate)} is called without a discount percentage,
+     * then the discount is resolved from the current {@link DiscountPolicy}.
+     */
+    @Test
+    public void test_DiscountFromPolicy()
+    {
+        final Tool toolJAKR = new Tool("JAKR", ToolType.JACKHAMMER, ToolBrand.RIDGID, BigDecimal.valueOf(2.99), true,
+                false, false, true);
+
+        final Map<String, Tool> toolsByToolCode = Map.of("JAKR", toolJAKR);
+
+        final RentalStore rentalStore = new RentalStore(toolsByToolCode);
+
+        rentalStore.setDiscountPolicy(DiscountPolicy.compile(List.of(new DiscountRule(ToolType.JACKHAMMER, null, 1,
+                null, null, 50))));
+
+        final RentalAgreement rentalAgreement = rentalStore.checkout("JAKR", 4, LocalDate.of(2020, 7, 2));
+
+        assertEquals(50, rentalAgreement.getDiscountPercent());
+        assertTrue(rentalAgreement.getDiscountAmount().compareTo(BigDecimal.valueOf(1.50)) == 0);
+        assertTrue(rentalAgreement.getFinalCharge().compareTo(BigDecimal.valueOf(1.49)) == 0);
+        assertFalse(toolJAKR.isAvailable());
+    }
+
+    /**
+     * Tests that when {@link RentalStore#checkout(String, String, int, int, LocalDate)} is retried with the same
+     * idempotency key, then the original {@link RentalAgreement} is returned instead of null.
+     */
+    @Test
+    public void test_RetryWithSameIdempotencyKey()
+    {
+        final Tool toolJAKR = new Tool("JAKR", ToolType.JACKHAMMER, ToolBrand.RIDGID, BigDecimal.valueOf(2.99), true,
+                false, false, true);
+
+        final Map<String, Tool> toolsByToolCode = Map.of("JAKR", toolJAKR);
+
+        final RentalStore rentalStore = new RentalStore(toolsByToolCode);
+
+        final RentalAgreement rentalAgreement = rentalStore.checkout("request-1", "JAKR", 4, 50,
+                LocalDate.of(2020, 7, 2));
+
+        assertNotNull(rentalAgreement);
+        assertSame(rentalAgreement, rentalStore.checkout("request-1", "JAKR", 4, 50, LocalDate.of(2020, 7, 2)));
+        assertNull(rentalStore.checkout("request-2", "JAKR", 4, 50, LocalDate.of(2020, 7, 2)));
+        assertFalse(toolJAKR.isAvailable());
+    }
+
+    /**
+     * Tests that when an idempotency key is reused with a different tool code, rental days or discount percentage,
+     * then {@link RentalStore#checkout(String, String, int, int, LocalDate)} throws instead of returning the first
+     * request's {@link RentalAgreement}.
+     */
+    @Test
+    public void test_IdempotencyKeyReusedForDifferentRequest()
+    {
+        final Tool toolJAKR = new Tool("JAKR", ToolType.JACKHAMMER, ToolBrand.RIDGID, BigDecimal.valueOf(2.99), true,
+                false, false, true);
+        final Tool toolLADW = new Tool("LADW", ToolType.LADDER, ToolBrand.WERNER, BigDecimal.valueOf(1.99), true,
+                true, false, true);
+
+        final RentalStore rentalStore = new RentalStore(Map.of("JAKR", toolJAKR, "LADW", toolLADW));
+
+        assertNotNull(rentalStore.checkout("request-1", "JAKR", 4, 50, LocalDate.of(2020, 7, 2)));
+
+        assertThrows(IllegalArgumentException.class, () ->
+                rentalStore.checkout("request-1", "LADW", 4, 50, LocalDate.of(2020, 7, 2)));
+        assertThrows(IllegalArgumentException.class, () ->
+                rentalStore.checkout("request-1", "JAKR", 5, 50, LocalDate.of(2020, 7, 2)));
+        assertThrows(IllegalArgumentException.class, () ->
+                rentalStore.checkout("request-1", "JAKR", 4, 10, LocalDate.of(2020, 7, 2)));
+        assertTrue(toolLADW.isAvailable());
+    }
+
+    /**
+     * Tests that {@link RentalStore#checkoutCart(List, int, int, LocalDate)} claims every tool in the cart and
+     * returns a {@link RentalAgreement} for each of them in cart order.
+     */
+    @Test
+    public void test_CartCheckout()
+    {
+        final Tool toolCHNS = new Tool("CHNS", ToolType.CHAINSAW, ToolBrand.STIHL, BigDecimal.valueOf(1.49), true,
+                false, true, true);
+        final Tool toolLADW = new Tool("LADW", ToolType.LADDER, ToolBrand.WERNER, BigDecimal.valueOf(1.99), true,
+                true, false, true);
+
+        final Map<String, Tool> toolsByToolCode = Map.of("CHNS", toolCHNS, "LADW", toolLADW);
+
+        final RentalStore rentalStore = new RentalStore(toolsByToolCode);
+
+        final CartRentalAgreement cartRentalAgreement = rentalStore.checkoutCart(List.of("LADW", "CHNS"), 3, 10,
+                LocalDate.of(2020, 7, 2));
+
+        assertEquals("LADW", cartRentalAgreement.getRentalAgreements().get(0).getToolCode());
+        assertEquals("CHNS", cartRentalAgreement.getRentalAgreements().get(1).getToolCode());
+        assertTrue(cartRentalAgreement.getPreDiscountCharge().compareTo(BigDecimal.valueOf(5.47)) == 0);
+        assertFalse(toolCHNS.isAvailable());
+        assertFalse(toolLADW.isAvailable());
+    }
+
+    /**
+     * Tests that when one tool of a cart is unavailable, then no tool of the cart is claimed and null is returned.
+     */
+    @Test
+    public void test_CartCheckoutAllOrNothing()
+    {
+        final Tool toolCHNS = new Tool("CHNS", ToolType.CHAINSAW, ToolBrand.STIHL, BigDecimal.valueOf(1.49), true,
+                false, true, true);
+        final Tool toolJAKR = new Tool("JAKR", ToolType.JACKHAMMER, ToolBrand.RIDGID, BigDecimal.valueOf(2.99), true,
+                false, false, false);
+
+        final Map<String, Tool> toolsByToolCode = Map.of("CHNS", toolCHNS, "JAKR", toolJAKR);
+
+        final RentalStore rentalStore = new RentalStore(toolsByToolCode);
+
+        assertNull(rentalStore.checkoutCart(List.of("CHNS", "JAKR"), 3, 10, LocalDate.of(2020, 7, 2)));
+        assertTrue(toolCHNS.isAvailable());
+    }
+
+    /**
+     * Tests that an empty cart is rejected.
+     */
+    @Test
+    public void test_EmptyCart()
+    {
+        final RentalStore rentalStore = new RentalStore(Map.of());
+
+        final Exception exception = assertThrows(IllegalArgumentException.class, () ->
+                rentalStore.checkoutCart(List.of(), 3, 10, LocalDate.of(2020, 7, 2)));
+
+        assertEquals("The cart must contain at least one tool code. Tool codes: []", exception.getMessage());
+    }
+
+    /**
+     * Tests that many overlapping carts checked out concurrently finish without deadlock, and that every tool is
+     * claimed by exactly one cart.
+     */
+    @Test
+    public void test_ConcurrentOverlappingCarts() throws Exception
+    {
+        final Map<String, Tool> toolsByToolCode = new HashMap<>();
+        for (int toolNumber = 0; toolNumber < 50; toolNumber++)
+        {
+            toolsByToolCode.put("T" + toolNumber, new Tool("T" + toolNumber, ToolType.LADDER, ToolBrand.WERNER,
+                    BigDecimal.valueOf(1.99), true, true, false, true));
+        }
+
+        final RentalStore rentalStore = new RentalStore(toolsByToolCode);
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(8);
+        final List<Future<CartRentalAgreement>> futures = new ArrayList<>();
+
+        for (int cart = 0; cart < 100; cart++)
+        {
+            final List<String> toolCodes = List.of("T" + cart % 50, "T" + (cart * 7 + 3) % 50, "T" + (49 - cart % 50));
+            if (new HashSet<>(toolCodes).size() == toolCodes.size())
+            {
+                futures.add(executorService.submit(() -> rentalStore.checkoutCart(toolCodes, 3, 0,
+                        LocalDate.of(2020, 7, 2))));
+            }
+        }
+
+        final Set<String> claimedToolCodes = new HashSet<>();
+        for (final Future<CartRentalAgreement> future : futures)
+        {
+            final CartRentalAgreement cartRentalAgreement = future.get(10, TimeUnit.SECONDS);
+            if (cartRentalAgreement != null)
+            {
+                for (final RentalAgreement rentalAgreement : cartRentalAgreement.getRentalAgreements())
+                {
+                    assertTrue(claimedToolCodes.add(rentalAgreement.getToolCode()));
+                }
+            }
+        }
+        executorService.shutdown();
+
+        for (final Tool tool : toolsByToolCode.values())
+        {
+            assertEquals(!claimedToolCodes.contains(tool.getToolCode()), tool.isAvailable());
+        }
+    }
+
+    /**
+     * Tests that a customer cannot go over the open rental limit, and that returning a tool closes the agreement
+     * and frees both the tool and a place under the limit.
+     */
+    @Test
+    public void test_CustomerOpenRentalLimit()
+    {
+        final Map<String, Tool> toolsByToolCode = new HashMap<>();
+        for (int toolNumber = 0; toolNumber < 4; toolNumber++)
+        {
+            toolsByToolCode.put("T" + toolNumber, new Tool("T" + toolNumber, ToolType.LADDER, ToolBrand.WERNER,
+                    BigDecimal.valueOf(1.99), true, true, false, true));
+        }
+
+        final RentalStore rentalStore = new RentalStore(toolsByToolCode);
+
+        for (int toolNumber = 0; toolNumber < 3; toolNumber++)
+        {
+            assertNotNull(rentalStore.checkoutForCustomer("C1", "T" + toolNumber, 3, 0, LocalDate.of(2020, 7, 2)));
+        }
+
+        assertNull(rentalStore.checkoutForCustomer("C1", "T3", 3, 0, LocalDate.of(2020, 7, 2)));
+        assertTrue(toolsByToolCode.get("T3").isAvailable());
+        assertEquals(3, rentalStore.getCustomerAccount("C1").getOpenRentalCount());
+
+        assertNotNull(rentalStore.returnTool("C1", "T1"));
+        assertTrue(toolsByToolCode.get("T1").isAvailable());
+        assertEquals(List.of("T0", "T2"), rentalStore.getCustomerAccount("C1").getOpenRentalAgreements().stream()
+                .map(RentalAgreement::getToolCode).collect(Collectors.toList()));
+
+        assertNotNull(rentalStore.checkoutForCustomer("C1", "T3", 3, 0, LocalDate.of(2020, 7, 2)));
+        assertEquals(4, rentalStore.getCustomerAccount("C1").getTotalRentalCount());
+        assertNull(rentalStore.returnTool("C2", "T0"));
+    }
+
+    /**
+     * Tests that marking a customer's rented tool available closes the customer's agreement, so that a later return
+     * of that stale agreement cannot free the tool while another customer has it.
+     */
+    @Test
+    public void test_SetAvailabilityReturnsCustomerRental()
+    {
+        final Tool toolT1 = new Tool("T1", ToolType.LADDER, ToolBrand.WERNER, BigDecimal.valueOf(1.99), true, true,
+                false, true);
+
+        final RentalStore rentalStore = new RentalStore(Map.of("T1", toolT1));
+
+        assertNotNull(rentalStore.checkoutForCustomer("A", "T1", 3, 0, LocalDate.of(2020, 7, 2)));
+        rentalStore.setAvailability("T1", true);
+
+        assertTrue(toolT1.isAvailable());
+        assertEquals(0, rentalStore.getCustomerAccount("A").getOpenRentalCount());
+
+        assertNotNull(rentalStore.checkoutForCustomer("B", "T1", 3, 0, LocalDate.of(2020, 7, 2)));
+
+        assertNull(rentalStore.returnTool("A", "T1"));
+        assertFalse(toolT1.isAvailable());
+
+        assertNotNull(rentalStore.returnTool("B", "T1"));
+        assertTrue(toolT1.isAvailable());
+    }
+}
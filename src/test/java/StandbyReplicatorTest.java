@@ -0,0 +1,268 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link StandbyReplicator} and {@link ReplicationLog} classes.
+ * @author Eli Charleville
+ */
+class StandbyReplicatorTest
+{
+    /**
+     * Tests that a standby tailing a primary's log follows tool changes, checkouts and returns, and once promoted
+     * serves checkouts with the primary's last state.
+     */
+    @Test
+    public void test_StandbyFollowsPrimaryAndPromotes(@TempDir Path directory) throws Exception
+    {
+        final Path file = directory.resolve("store.log");
+        final RentalStore primary = new RentalStore(Map.of(
+                "JAKR", new Tool("JAKR", ToolType.JACKHAMMER, ToolBrand.RIDGID, BigDecimal.valueOf(2.99), true,
+                        false, false, true),
+                "LADW", new Tool("LADW", ToolType.LADDER, ToolBrand.WERNER, BigDecimal.valueOf(1.99), true, true,
+                        false, true),
+                "CHNS", new Tool("CHNS", ToolType.CHAINSAW, ToolBrand.STIHL, BigDecimal.valueOf(1.49), true, false,
+                        true, true)));
+
+        try (ReplicationLog replicationLog = new ReplicationLog(file))
+        {
+            primary.startReplication(replicationLog);
+
+            final StandbyReplicator standby = new StandbyReplicator(file, new RentalStore(Map.of()),
+                    Duration.ofMillis(5), Clock.systemUTC());
+
+            assertNotNull(primary.checkout("JAKR", 4, 0, LocalDate.of(2020, 7, 2)));
+            assertNotNull(primary.checkoutForCustomer("c1", "LADW", 3, 10, LocalDate.of(2020, 7, 2)));
+            assertNotNull(primary.checkoutForCustomer("c1", "CHNS", 5, 25, LocalDate.of(2015, 7, 2)));
+            assertNotNull(primary.returnTool("c1", "CHNS"));
+            primary.setDailyCharge("CHNS", BigDecimal.valueOf(1.79));
+
+            final long deadline = System.nanoTime() + 30_000_000_000L;
+            while (standby.getAppliedSequence() < replicationLog.getSequence() && System.nanoTime() < deadline)
+            {
+                Thread.sleep(5);
+            }
+
+            assertEquals(replicationLog.getSequence(), standby.getAppliedSequence());
+            assertEquals(0, standby.getLagBytes());
+            assertEquals(0, standby.getLagMillis());
+            assertEquals(3, standby.getRentalAgreementStore().size());
+
+            final long promotionStart = System.nanoTime();
+            final RentalStore promoted = standby.promote();
+            assertTrue(System.nanoTime() - promotionStart < 1_000_000_000L);
+
+            assertNull(promoted.checkout("JAKR", 4, 0, LocalDate.of(2020, 7, 2)));
+            assertNull(promoted.checkout("LADW", 4, 0, LocalDate.of(2020, 7, 2)));
+            assertTrue(promoted.checkout("CHNS", 1, 0, LocalDate.of(2020, 7, 2)).getDailyCharge()
+                    .compareTo(BigDecimal.valueOf(1.79)) == 0);
+            assertEquals(1, promoted.getCustomerAccount("c1").getOpenRentalCount());
+            assertEquals("LADW", promoted.getCustomerAccount("c1").getOpenRentalAgreements().get(0).getToolCode());
+        }
+    }
+
+    /**
+     * Tests that records written while the standby is not tailing are reported as lag until they are applied.
+     */
+    @Test
+    public void test_LagIsReportedUntilCaughtUp(@TempDir Path directory) throws Exception
+    {
+        final Path file = directory.resolve("store.log");
+        final RentalStore primary = new RentalStore(Map.of(
+                "JAKR", new Tool("JAKR", ToolType.JACKHAMMER, ToolBrand.RIDGID, BigDecimal.valueOf(2.99), true,
+                        false, false, true)));
+
+        try (ReplicationLog replicationLog = new ReplicationLog(file))
+        {
+            final StandbyReplicator standby = new StandbyReplicator(file, new RentalStore(Map.of()),
+                    Duration.ofHours(1), Clock.offset(Clock.systemUTC(), Duration.ofSeconds(5)));
+
+            primary.startReplication(replicationLog);
+            primary.setAvailability("JAKR", false);
+            replicationLog.flush();
+
+            assertTrue(standby.getLagBytes() > 0);
+            assertTrue(standby.getLagMillis() >= 5_000);
+
+            assertEquals(2, standby.catchUp());
+            assertEquals(0, standby.getLagBytes());
+            assertEquals(0, standby.getLagMillis());
+            assertNull(standby.promote().checkout("JAKR", 1, 0, LocalDate.of(2020, 7, 2)));
+        }
+    }
+
+    /**
+     * Tests that records appended faster than a small queue drains are all written, in sequence order, before a flush
+     * returns.
+     */
+    @Test
+    public void test_QueuedRecordsAreWrittenInOrder(@TempDir Path directory) throws Exception
+    {
+        final Path file = directory.resolve("store.log");
+        final RentalStore primary = new RentalStore(Map.of(
+                "JAKR", new Tool("JAKR", ToolType.JACKHAMMER, ToolBrand.RIDGID, BigDecimal.valueOf(2.99), true,
+                        false, false, true)));
+
+        try (ReplicationLog replicationLog = new ReplicationLog(file, 2))
+        {
+            primary.startReplication(replicationLog);
+
+            for (int index = 0; index < 100; index++)
+            {
+                primary.setAvailability("JAKR", index % 2 == 0);
+            }
+
+            replicationLog.flush();
+            assertEquals(101, replicationLog.getSequence());
+            assertEquals(101, replicationLog.getWrittenSequence());
+            assertNull(replicationLog.getFailure());
+
+            final StandbyReplicator standby = new StandbyReplicator(file, new RentalStore(Map.of()),
+                    Duration.ofHours(1), Clock.systemUTC());
+
+            assertEquals(101, standby.getAppliedSequence());
+            assertNull(standby.promote().checkout("JAKR", 1, 0, LocalDate.of(2020, 7, 2)));
+        }
+    }
+
+    /**
+     * Tests that a change made by a thread with its interrupt flag set is still shipped, leaves the log healthy and
+     * keeps the thread's interrupt flag set.
+     */
+    @Test
+    public void test_InterruptedCallerDoesNotStopLog(@TempDir Path directory) throws Exception
+    {
+        final Path file = directory.resolve("store.log");
+        final RentalStore primary = new RentalStore(Map.of(
+                "JAKR", new Tool("JAKR", ToolType.JACKHAMMER, ToolBrand.RIDGID, BigDecimal.valueOf(2.99), true,
+                        false, false, true)));
+
+        try (ReplicationLog replicationLog = new ReplicationLog(file, 1))
+        {
+            primary.startReplication(replicationLog);
+
+            Thread.currentThread().interrupt();
+            primary.setAvailability("JAKR", false);
+            primary.setAvailability("JAKR", true);
+            assertTrue(Thread.interrupted());
+
+            primary.setAvailability("JAKR", false);
+            replicationLog.flush();
+
+            assertNull(replicationLog.getFailure());
+            assertEquals(4, replicationLog.getWrittenSequence());
+        }
+
+        final StandbyReplicator standby = new StandbyReplicator(file, new RentalStore(Map.of()),
+                Duration.ofHours(1), Clock.systemUTC());
+
+        assertEquals(4, standby.getAppliedSequence());
+        assertNull(standby.promote().checkout("JAKR", 1, 0, LocalDate.of(2020, 7, 2)));
+    }
+
+    /**
+     * Tests that reopening a log file continues the sequence numbers of its records and cuts off a record that was
+     * not finished, so a standby applies every record of both primaries.
+     */
+    @Test
+    public void test_ReopenedLogContinuesSequence(@TempDir Path directory) throws Exception
+    {
+        final Path file = directory.resolve("store.log");
+        final RentalStore primary = new RentalStore(Map.of(
+                "JAKR", new Tool("JAKR", ToolType.JACKHAMMER, ToolBrand.RIDGID, BigDecimal.valueOf(2.99), true,
+                        false, false, true)));
+
+        try (ReplicationLog replicationLog = new ReplicationLog(file))
+        {
+            primary.startReplication(replicationLog);
+            assertNotNull(primary.checkoutForCustomer("c1", "JAKR", 4, 0, LocalDate.of(2020, 7, 2)));
+        }
+
+        final ByteBuffer unfinishedRecord = ByteBuffer.allocate(Integer.BYTES + Long.BYTES);
+        unfinishedRecord.putInt(17).putLong(4).flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.APPEND))
+        {
+            channel.write(unfinishedRecord);
+        }
+
+        try (ReplicationLog replicationLog = new ReplicationLog(file))
+        {
+            assertEquals(3, replicationLog.getSequence());
+
+            primary.startReplication(replicationLog);
+            assertNotNull(primary.returnTool("c1", "JAKR"));
+            replicationLog.flush();
+            assertEquals(7, replicationLog.getSequence());
+        }
+
+        final StandbyReplicator standby = new StandbyReplicator(file, new RentalStore(Map.of()),
+                Duration.ofHours(1), Clock.systemUTC());
+
+        assertNull(standby.getFailure());
+        assertEquals(7, standby.getAppliedSequence());
+        assertEquals(0, standby.getLagBytes());
+
+        assertEquals(1, standby.getRentalAgreementStore().size());
+
+        final RentalStore promoted = standby.promote();
+        assertEquals(0, promoted.getCustomerAccount("c1").getOpenRentalCount());
+        assertEquals(1, promoted.getCustomerAccount("c1").getTotalRentalCount());
+        assertNotNull(promoted.checkout("JAKR", 1, 0, LocalDate.of(2020, 7, 2)));
+    }
+
+    /**
+     * Tests that an agreement for a tool priced in fractions of a cent is applied, and that a record that cannot be
+     * applied stops the standby at that record with a reported failure instead of killing it silently.
+     */
+    @Test
+    public void test_BadRecordStopsStandbyWithFailure(@TempDir Path directory) throws Exception
+    {
+        final Path file = directory.resolve("store.log");
+        final RentalStore primary = new RentalStore(Map.of(
+                "JAKR", new Tool("JAKR", ToolType.JACKHAMMER, ToolBrand.RIDGID, new BigDecimal("1.995"), true,
+                        false, false, true)));
+
+        try (ReplicationLog replicationLog = new ReplicationLog(file))
+        {
+            primary.startReplication(replicationLog);
+            assertNotNull(primary.checkout("JAKR", 4, 0, LocalDate.of(2020, 7, 2)));
+        }
+
+        final StandbyReplicator standby = new StandbyReplicator(file, new RentalStore(Map.of()),
+                Duration.ofMillis(5), Clock.systemUTC());
+
+        assertNull(standby.getFailure());
+        assertEquals(3, standby.getAppliedSequence());
+        assertEquals(new BigDecimal("1.995"), standby.getRentalAgreementStore().get(0).getDailyCharge());
+
+        final ByteBuffer badRecord = ByteBuffer.allocate(Integer.BYTES + 17);
+        badRecord.putInt(17).putLong(4).putLong(System.currentTimeMillis()).put((byte) 99).flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.APPEND))
+        {
+            channel.write(badRecord);
+        }
+
+        final long deadline = System.nanoTime() + 30_000_000_000L;
+        while (standby.getFailure() == null && System.nanoTime() < deadline)
+        {
+            Thread.sleep(5);
+        }
+
+        assertTrue(standby.getFailure().getMessage().contains("unknown record type"));
+        assertEquals(3, standby.getAppliedSequence());
+        assertTrue(standby.getLagBytes() > 0);
+        assertThrows(IOException.class, standby::promote);
+    }
+}
@@ -0,0 +1,164 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link StoreConfigurationWatcher} class.
+ * @author Eli Charleville
+ */
+class StoreConfigurationWatcherTest
+{
+    /**
+     * Tests that a changed configuration file updates the changed tool in place, adds new tools and removes dropped
+     * tools, and that a file that cannot be parsed leaves the last good configuration in effect.
+     */
+    @Test
+    public void test_ReloadAppliesDiffAndRejectsBadFile(@TempDir Path directory) throws Exception
+    {
+        final Path file = directory.resolve("tools.csv");
+        replace(file, "toolCode,toolType,toolBrand,dailyCharge,weekdayCharge,weekendCharge,holidayCharge\n" +
+                "JAKR,JACKHAMMER,RIDGID,2.99,true,false,false\n" +
+                "LADW,LADDER,WERNER,1.99,true,true,false\n");
+
+        final RentalStore rentalStore = new RentalStore(Map.of());
+
+        try (StoreConfigurationWatcher watcher = new StoreConfigurationWatcher(rentalStore, directory))
+        {
+            assertNotNull(rentalStore.checkout("LADW", 3, 10, LocalDate.of(2020, 7, 2)));
+
+            replace(file, "JAKR,JACKHAMMER,RIDGID,3.49,true,false,false\n" +
+                    "LADW,LADDER,WERNER,1.99,true,true,false\n" +
+                    "CHNS,CHAINSAW,STIHL,1.49,true,false,true\n");
+            assertTrue(watcher.reload(file.getFileName()));
+
+            assertTrue(rentalStore.checkout("JAKR", 4, 0, LocalDate.of(2020, 7, 2)).getDailyCharge()
+                    .compareTo(BigDecimal.valueOf(3.49)) == 0);
+            assertNull(rentalStore.checkout("LADW", 3, 10, LocalDate.of(2020, 7, 2)));
+            assertNotNull(rentalStore.checkout("CHNS", 3, 10, LocalDate.of(2020, 7, 2)));
+
+            replace(file, "CHNS,CHAINSAW,STIHL,not a number,true,false,true\n");
+            assertFalse(watcher.reload(file.getFileName()));
+            assertEquals(3, rentalStore.createFleetQuoter().quote(1, LocalDate.of(2020, 7, 2)).size());
+
+            replace(file, "CHNS,CHAINSAW,STIHL,1.49,true,false,true\n");
+            assertTrue(watcher.reload(file.getFileName()));
+            assertEquals(1, rentalStore.createFleetQuoter().quote(1, LocalDate.of(2020, 7, 2)).size());
+        }
+    }
+
+    /**
+     * Tests that a tool out on rental stays unavailable when its line is removed and restored, and that a tool code
+     * that moved to another file is not removed when the file it left is reloaded.
+     */
+    @Test
+    public void test_RemovalKeepsAvailabilityAndOwnership(@TempDir Path directory) throws Exception
+    {
+        final Path fileA = directory.resolve("a.csv");
+        final Path fileB = directory.resolve("b.csv");
+        replace(fileA, "JAKR,JACKHAMMER,RIDGID,2.99,true,false,false\n" +
+                "LADW,LADDER,WERNER,1.99,true,true,false\n");
+
+        final RentalStore rentalStore = new RentalStore(Map.of());
+
+        try (StoreConfigurationWatcher watcher = new StoreConfigurationWatcher(rentalStore, directory))
+        {
+            assertNotNull(rentalStore.checkoutForCustomer("c1", "JAKR", 3, 0, LocalDate.of(2020, 7, 2)));
+
+            replace(fileA, "LADW,LADDER,WERNER,1.99,true,true,false\n");
+            assertTrue(watcher.reload(fileA.getFileName()));
+            replace(fileA, "JAKR,JACKHAMMER,RIDGID,2.99,true,false,false\n" +
+                    "LADW,LADDER,WERNER,1.99,true,true,false\n");
+            assertTrue(watcher.reload(fileA.getFileName()));
+
+            assertNull(rentalStore.checkout("JAKR", 3, 0, LocalDate.of(2020, 7, 2)));
+            assertNotNull(rentalStore.returnTool("c1", "JAKR"));
+
+            replace(fileB, "LADW,LADDER,WERNER,2.49,true,true,false\n");
+            assertTrue(watcher.reload(fileB.getFileName()));
+            replace(fileA, "JAKR,JACKHAMMER,RIDGID,2.99,true,false,false\n");
+            assertTrue(watcher.reload(fileA.getFileName()));
+
+            assertTrue(rentalStore.checkout("LADW", 3, 0, LocalDate.of(2020, 7, 2)).getDailyCharge()
+                    .compareTo(BigDecimal.valueOf(2.49)) == 0);
+            assertNotNull(rentalStore.checkout("JAKR", 3, 0, LocalDate.of(2020, 7, 2)));
+        }
+    }
+
+    /**
+     * Tests that a file that briefly reads as empty is rejected and keeps its tools, that its tools are removed once
+     * it is deleted, and that checking out a removed tool code is rejected with an {@link IllegalArgumentException}.
+     */
+    @Test
+    public void test_EmptyFileIsRejectedUntilDeleted(@TempDir Path directory) throws Exception
+    {
+        final Path file = directory.resolve("tools.csv");
+        replace(file, "JAKR,JACKHAMMER,RIDGID,2.99,true,false,false\n");
+
+        final RentalStore rentalStore = new RentalStore(Map.of());
+
+        try (StoreConfigurationWatcher watcher = new StoreConfigurationWatcher(rentalStore, directory))
+        {
+            Files.writeString(file, "");
+            assertFalse(watcher.reload(file.getFileName()));
+            assertNotNull(rentalStore.checkout("JAKR", 3, 0, LocalDate.of(2020, 7, 2)));
+
+            Files.delete(file);
+            assertTrue(watcher.reload(file.getFileName()));
+
+            assertThrows(IllegalArgumentException.class, () ->
+                    rentalStore.checkout("JAKR", 3, 0, LocalDate.of(2020, 7, 2)));
+            assertThrows(IllegalArgumentException.class, () ->
+                    rentalStore.checkout("JAKR", 3, LocalDate.of(2020, 7, 2)));
+            assertThrows(IllegalArgumentException.class, () ->
+                    rentalStore.checkoutForCustomer("c1", "JAKR", 3, 0, LocalDate.of(2020, 7, 2)));
+        }
+    }
+
+    /**
+     * Tests that a configuration file moved into the watched directory is picked up without an explicit reload.
+     */
+    @Test
+    public void test_WatchesDirectory(@TempDir Path directory, @TempDir Path staging) throws Exception
+    {
+        final RentalStore rentalStore = new RentalStore(Map.of());
+
+        try (StoreConfigurationWatcher ignored = new StoreConfigurationWatcher(rentalStore, directory))
+        {
+            final Path stagedFile = staging.resolve("tools.csv");
+            Files.writeString(stagedFile, "JAKR,JACKHAMMER,RIDGID,2.99,true,false,false\n");
+            Files.move(stagedFile, directory.resolve("tools.csv"), StandardCopyOption.ATOMIC_MOVE);
+
+            final long deadline = System.nanoTime() + 30_000_000_000L;
+            while (rentalStore.createFleetQuoter().quote(1, LocalDate.of(2020, 7, 2)).size() == 0
+                    && System.nanoTime() < deadline)
+            {
+                Thread.sleep(10);
+            }
+
+            assertNotNull(rentalStore.checkout("JAKR", 4, 0, LocalDate.of(2020, 7, 2)));
+        }
+    }
+
+    /**
+     * Replaces a configuration file by an atomic move, so that the watcher never reads it half written.
+     * @param file
+     *         The {@link Path} of the configuration file.
+     * @param content
+     *         The {@link String} content of the file.
+     */
+    private static void replace(final Path file, final String content) throws IOException
+    {
+        final Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(temporaryFile, content);
+        Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+}